@@ -3,8 +3,25 @@ include $(CLEAR_VARS)
 
 LOCAL_MODULE_TAGS := optional
 
-LOCAL_SRC_FILES := $(call all-subdir-java-files)
+LOCAL_SRC_FILES := $(call all-java-files-under, src) \
+    $(call all-java-files-under, core/src)
 
 LOCAL_PACKAGE_NAME := Effem
 
 include $(BUILD_PACKAGE)
+
+# Android independent core, for benchmarking on the build host
+include $(CLEAR_VARS)
+
+LOCAL_MODULE_TAGS := optional
+
+LOCAL_SRC_FILES := $(call all-java-files-under, core/src)
+
+LOCAL_MODULE := effem-core
+
+include $(BUILD_HOST_JAVA_LIBRARY)
+
+# the benchmarks need JMH, which not every tree has
+ifneq ($(wildcard external/jmh/Android.mk),)
+include $(LOCAL_PATH)/benchmarks/Android.mk
+endif
@@ -0,0 +1,15 @@
+LOCAL_PATH:= $(call my-dir)
+include $(CLEAR_VARS)
+
+LOCAL_MODULE_TAGS := optional
+
+LOCAL_SRC_FILES := $(call all-java-files-under, src)
+
+LOCAL_MODULE := effem-benchmarks
+
+# jmh-generator-annprocess generates the benchmark harness at compile time
+LOCAL_STATIC_JAVA_LIBRARIES := effem-core jmh-core jmh-generator-annprocess
+
+LOCAL_JAR_MANIFEST := manifest.txt
+
+include $(BUILD_HOST_JAVA_LIBRARY)
@@ -0,0 +1,25 @@
+#!/bin/sh
+#
+# Run the benchmark suite and compare against the recorded baseline.
+# Fails if any benchmark got slower than the allowed tolerance.
+#
+#   run.sh [path/to/effem-benchmarks.jar]
+#
+# The baseline is tracked in results/baseline.csv. As long as it holds no
+# scores, the run is recorded as the baseline instead, commit it to gate
+# later runs. To accept new numbers, copy results/latest.csv over
+# results/baseline.csv and commit it.
+
+DIR=$(cd "$(dirname "$0")" && pwd)
+JAR=${1:-$ANDROID_HOST_OUT/framework/effem-benchmarks.jar}
+BASELINE=$DIR/results/baseline.csv
+LATEST=$DIR/results/latest.csv
+
+mkdir -p "$DIR/results"
+if [ -f "$BASELINE" ] && [ "$(wc -l < "$BASELINE")" -gt 1 ]; then
+    exec java -jar "$JAR" "$LATEST" "$BASELINE"
+fi
+
+java -jar "$JAR" "$LATEST" || exit $?
+cp "$LATEST" "$BASELINE"
+echo "recorded $BASELINE, commit it to gate later runs"
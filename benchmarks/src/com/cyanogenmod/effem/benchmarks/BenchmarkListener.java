@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem.benchmarks;
+
+import com.cyanogenmod.effem.FmReceiverBackend;
+import com.cyanogenmod.effem.RdsData;
+
+/**
+ * Receiver listener that ignores all events, for overriding single methods
+ */
+class BenchmarkListener implements FmReceiverBackend.Listener {
+    public void onStarted() {
+    }
+
+    public void onScan(int tunedFrequency, int signalStrength,
+            int scanDirection, boolean aborted) {
+    }
+
+    public void onFullScan(int[] frequency, int[] signalStrength, boolean aborted) {
+    }
+
+    public void onRdsDataFound(RdsData rdsData, int frequency) {
+    }
+}
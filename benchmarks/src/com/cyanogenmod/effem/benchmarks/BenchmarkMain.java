@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all benchmarks, writes the results as CSV and optionally compares
+ * them against a baseline from an earlier run.
+ *
+ * All benchmarks report average time per operation, so a higher score
+ * is worse.
+ *
+ * Usage: BenchmarkMain results.csv [baseline.csv]
+ */
+public class BenchmarkMain {
+    // allowed slowdown against the baseline
+    private static final double TOLERANCE = 0.10;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: BenchmarkMain results.csv [baseline.csv]");
+            System.exit(2);
+        }
+
+        Options options = new OptionsBuilder()
+                .include(BenchmarkMain.class.getPackage().getName() + "\\..*Benchmark")
+                .resultFormat(ResultFormatType.CSV)
+                .result(args[0])
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        if (args.length > 1) {
+            int regressions = compare(results, readBaseline(args[1]));
+            if (regressions > 0) {
+                System.err.println(regressions + " benchmark(s) regressed by more than "
+                        + (int) (TOLERANCE * 100) + "%");
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Compare results against baseline and print a report
+     *
+     * @return number of regressed benchmarks
+     */
+    private static int compare(Collection<RunResult> results,
+            Map<String, Double> baseline) {
+        int regressions = 0;
+        for (RunResult result : results) {
+            BenchmarkParams params = result.getParams();
+            List<String> values = new ArrayList<String>();
+            for (String key : new TreeSet<String>(params.getParamsKeys()))
+                values.add(key + "=" + params.getParam(key));
+            String name = key(params.getBenchmark(), values);
+
+            Double base = baseline.get(name);
+            double score = result.getPrimaryResult().getScore();
+            if (base == null) {
+                System.out.println(String.format("%-80s %12.3f (new)", name, score));
+                continue;
+            }
+
+            double change = (score - base) / base;
+            boolean regressed = change > TOLERANCE;
+            if (regressed)
+                regressions++;
+            System.out.println(String.format("%-80s %12.3f %+7.1f%%%s", name, score,
+                    change * 100, regressed ? " REGRESSION" : ""));
+        }
+        return regressions;
+    }
+
+    /**
+     * Read scores from a CSV result file as written by JMH
+     *
+     * @return map of benchmark key to score
+     */
+    private static Map<String, Double> readBaseline(String file) throws IOException {
+        Map<String, Double> baseline = new HashMap<String, Double>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line = reader.readLine();
+            if (line == null)
+                return baseline;
+
+            // header: Benchmark, Mode, Threads, Samples, Score, Error, Unit, Param: ...
+            List<String> header = splitCsv(line);
+            int scoreColumn = header.indexOf("Score");
+            while ((line = reader.readLine()) != null) {
+                List<String> columns = splitCsv(line);
+                if (columns.size() != header.size())
+                    continue;
+
+                List<String> values = new ArrayList<String>();
+                for (String column : new TreeSet<String>(header)) {
+                    if (column.startsWith("Param: ")) {
+                        String value = columns.get(header.indexOf(column));
+                        if (value.length() > 0)
+                            values.add(column.substring(7) + "=" + value);
+                    }
+                }
+                baseline.put(key(columns.get(0), values),
+                        Double.parseDouble(columns.get(scoreColumn)));
+            }
+        } finally {
+            reader.close();
+        }
+        return baseline;
+    }
+
+    private static String key(String benchmark, List<String> params) {
+        StringBuilder sb = new StringBuilder(benchmark);
+        for (String param : params)
+            sb.append(' ').append(param);
+        return sb.toString();
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> columns = new ArrayList<String>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                columns.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        columns.add(sb.toString());
+        return columns;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem.benchmarks;
+
+import com.cyanogenmod.effem.MenuTuple;
+import com.cyanogenmod.effem.StationJournal;
+import com.cyanogenmod.effem.StationListCodec;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Loading saved favorites at activity start. journal() is what FmRadio
+ * does now (off the UI thread); preferences() is the former path of
+ * parsing the JSON preference string, which ran on the UI thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ColdStartBenchmark {
+    @Param({"100", "10000"})
+    public int size;
+
+    private File mDir;
+    private String mEncoded;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        // distinct frequencies, the journal would merge duplicates
+        List<MenuTuple> stations = new ArrayList<MenuTuple>(size);
+        for (int i = 0; i < size; i++)
+            stations.add(new MenuTuple(70000 + i, "Station " + i));
+        mEncoded = StationListCodec.encode(stations);
+
+        mDir = File.createTempFile("effem", "journal");
+        if (!mDir.delete() || !mDir.mkdir())
+            throw new IOException("can't create " + mDir);
+
+        StationJournal.State state = new StationJournal.State();
+        state.band = 1;
+        state.frequency = 87500;
+        state.favorites.putAll(stations);
+        StationJournal journal = new StationJournal(mDir);
+        journal.reset(state);
+        journal.close();
+        if (!journal.awaitTermination(10, TimeUnit.SECONDS))
+            throw new IOException("journal not written");
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : mDir.listFiles())
+            file.delete();
+        mDir.delete();
+    }
+
+    @Benchmark
+    public int journal() {
+        StationJournal journal = new StationJournal(mDir);
+        StationJournal.State state = journal.load();
+        journal.close();
+        return state.favorites.size();
+    }
+
+    @Benchmark
+    public int preferences() throws IOException {
+        return StationListCodec.decode(mEncoded).size();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem.benchmarks;
+
+import com.cyanogenmod.effem.BandPlan;
+import com.cyanogenmod.effem.CommandScheduler;
+import com.cyanogenmod.effem.SimulatedReceiverBackend;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Tuning commands against a simulated receiver without seek latency,
+ * this measures the per-command overhead of the command path
+ *
+ * burst() submits ten steps through the CommandScheduler, like quick
+ * taps on the step button, and waits until the scheduler is done with
+ * them. Superseded steps are never executed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CommandDispatchBenchmark {
+    private SimulatedReceiverBackend mReceiver;
+    private BandPlan mBand;
+    private int mChannel;
+    private CommandScheduler mScheduler;
+
+    @Setup
+    public void setup() throws IOException {
+        mBand = BandPlan.forBand(BandPlan.BAND_EU);
+        mReceiver = new SimulatedReceiverBackend();
+        mReceiver.setStationLayout(30, 1);
+        mReceiver.setSeekLatency(0);
+        mReceiver.setRdsInterval(0);
+        mReceiver.setListener(new BenchmarkListener());
+        mReceiver.start(mBand);
+        mScheduler = new CommandScheduler("BenchmarkWorker", null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mScheduler.quit();
+        mReceiver.reset();
+    }
+
+    @Benchmark
+    public int step() throws IOException {
+        // same as SEEK_STEPUP, wrapping at the band edge
+        mChannel = (mChannel + 1) % mBand.getChannelCount();
+        int frequency = mBand.getFrequency(mChannel);
+        if (mReceiver.getFrequency() != frequency)
+            mReceiver.setFrequency(frequency);
+        return frequency;
+    }
+
+    @Benchmark
+    public int burst() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            mScheduler.submit(CommandScheduler.PRIORITY_TUNE, "step", new Runnable() {
+                public void run() {
+                    try {
+                        step();
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        }
+
+        // the barrier is a tuning command as well, so like any later tap
+        // it supersedes steps that haven't started yet
+        final CountDownLatch done = new CountDownLatch(1);
+        mScheduler.submit(CommandScheduler.PRIORITY_TUNE, "barrier", new Runnable() {
+            public void run() {
+                done.countDown();
+            }
+        });
+        done.await();
+        return mChannel;
+    }
+
+    @Benchmark
+    public int seek() throws IOException {
+        mReceiver.scanUp();
+        return mReceiver.getFrequency();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem.benchmarks;
+
+import com.cyanogenmod.effem.FavoriteStore;
+import com.cyanogenmod.effem.MenuTuple;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Favorite lookup as done on every frequency change, and toggling a
+ * favorite. linearScan() is the list walk FmRadio used before favorites
+ * were indexed, kept for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FavoriteLookupBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private List<MenuTuple> mStations;
+    private FavoriteStore mFavorites;
+    private int[] mQueries;
+    private int mQuery;
+
+    @Setup
+    public void setup() {
+        // distinct frequencies 1 KHz apart, so that every size is kept
+        // in full by the store
+        mStations = new ArrayList<MenuTuple>(size);
+        for (int i = 0; i < size; i++)
+            mStations.add(new MenuTuple(70000 + i, "Station " + i));
+        mFavorites = new FavoriteStore();
+        mFavorites.putAll(mStations);
+
+        // mix of hits and misses
+        Random random = new Random(42);
+        mQueries = new int[1024];
+        for (int i = 0; i < mQueries.length; i++)
+            mQueries[i] = 70000 + random.nextInt(760) * 50;
+    }
+
+    @Benchmark
+    public boolean lookup() {
+        // same as FmRadio.getFavorite
+        return mFavorites.contains(mQueries[mQuery++ & (mQueries.length - 1)]);
+    }
+
+    @Benchmark
+    public boolean toggle() {
+        // same as FmRadio.toggleFavorite, done twice to keep the size
+        int frequency = mQueries[mQuery++ & (mQueries.length - 1)];
+        for (int i = 0; i < 2; i++) {
+            if (!mFavorites.remove(frequency))
+                mFavorites.put(new MenuTuple(frequency, "toggled"));
+        }
+        return mFavorites.contains(frequency);
+    }
+
+    @Benchmark
+    public boolean linearScan() {
+        int frequency = mQueries[mQuery++ & (mQueries.length - 1)];
+        for (int i = 0; i < mStations.size(); i++) {
+            if (mStations.get(i).frequency == frequency)
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem.benchmarks;
+
+import com.cyanogenmod.effem.BandPlan;
+import com.cyanogenmod.effem.FrequencyFormatter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Frequency formatting as done on every frequency change and
+ * notification update
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FormatFrequencyBenchmark {
+    @Param({"0", "1", "2", "3"})
+    public int band;
+
+    private BandPlan mBand;
+    private FrequencyFormatter mFormatter;
+    private int mChannel;
+
+    @Setup
+    public void setup() {
+        mBand = BandPlan.forBand(band);
+        mFormatter = new FrequencyFormatter(mBand);
+    }
+
+    @Benchmark
+    public String format() {
+        // walk through the band like step-repeat does
+        mChannel = (mChannel + 1) % mBand.getChannelCount();
+        return FrequencyFormatter.format(mBand.getChannelOffset(),
+                mBand.getFrequency(mChannel));
+    }
+
+    @Benchmark
+    public String lookup() {
+        mChannel = (mChannel + 1) % mBand.getChannelCount();
+        return mFormatter.format(mBand.getFrequency(mChannel));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem.benchmarks;
+
+import com.cyanogenmod.effem.BandPlan;
+import com.cyanogenmod.effem.RdsData;
+import com.cyanogenmod.effem.RdsState;
+import com.cyanogenmod.effem.SimulatedReceiverBackend;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * RDS group delivery from the receiver backend to the listener
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RdsBenchmark {
+    private SimulatedReceiverBackend mReceiver;
+    private RdsState mState;
+    private int mChanged;
+
+    @Setup
+    public void setup() throws IOException {
+        BandPlan band = BandPlan.forBand(BandPlan.BAND_EU);
+        mReceiver = new SimulatedReceiverBackend();
+        mReceiver.setStations(SimulatedReceiverBackend.createStationLayout(band, 1, 1));
+        mReceiver.setSeekLatency(0);
+        mReceiver.setRdsInterval(0);
+        mReceiver.start(band);
+        mReceiver.scanUp();
+        mState = new RdsState();
+        mState.reset(mReceiver.getFrequency());
+
+        // same filtering and merging as FmRadioService
+        mReceiver.setListener(new BenchmarkListener() {
+            public void onRdsDataFound(RdsData rdsData, int frequency) {
+                if (frequency != mState.getFrequency())
+                    return;
+                mChanged |= mState.merge(rdsData);
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mReceiver.reset();
+    }
+
+    @Benchmark
+    public int process() {
+        mReceiver.emitRdsGroup();
+        return mChanged;
+    }
+}
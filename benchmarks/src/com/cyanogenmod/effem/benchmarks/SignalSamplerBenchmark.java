@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem.benchmarks;
+
+import com.cyanogenmod.effem.SignalSampler;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Recording a signal strength sample, and windowed statistics over the
+ * sample history as FmRadioService keeps it
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SignalSamplerBenchmark {
+    // window length in samples, at one sample per ms
+    @Param({"10", "600"})
+    public int window;
+
+    private final SignalSampler mSampler = new SignalSampler(600);
+    private final SignalSampler.Stats mStats = new SignalSampler.Stats();
+    private long mTime;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < 600; i++)
+            add();
+    }
+
+    private void add() {
+        mTime++;
+        mSampler.add(mTime, 87500 + (int) (mTime & 1) * 100, (int) (mTime % 97));
+    }
+
+    @Benchmark
+    public long sample() {
+        add();
+        return mTime;
+    }
+
+    @Benchmark
+    public int stats() {
+        return mSampler.getStats(mTime - window + 1, SignalSampler.ANY_FREQUENCY, mStats)
+                + mStats.average;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem.benchmarks;
+
+import com.cyanogenmod.effem.BandPlan;
+import com.cyanogenmod.effem.MenuTuple;
+import com.cyanogenmod.effem.StationListCodec;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Station list serialization as done when saving and loading favorites
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StationListBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private List<MenuTuple> mStations;
+    private String mEncoded;
+
+    @Setup
+    public void setup() {
+        mStations = createStations(size);
+        mEncoded = StationListCodec.encode(mStations);
+    }
+
+    /**
+     * Create a list of distinct stations, sorted by frequency
+     */
+    static List<MenuTuple> createStations(int size) {
+        BandPlan band = BandPlan.forBand(BandPlan.BAND_CHINA);
+        List<MenuTuple> stations = new ArrayList<MenuTuple>(size);
+        for (int i = 0; i < size; i++) {
+            // lists larger than the band repeat frequencies, that's fine
+            // for serialization
+            int frequency = band.getFrequency(i % band.getChannelCount());
+            stations.add(new MenuTuple(frequency, "Station " + i));
+        }
+        return stations;
+    }
+
+    @Benchmark
+    public String encode() {
+        return StationListCodec.encode(mStations);
+    }
+
+    @Benchmark
+    public List<MenuTuple> decode() throws IOException {
+        return StationListCodec.decode(mEncoded);
+    }
+}
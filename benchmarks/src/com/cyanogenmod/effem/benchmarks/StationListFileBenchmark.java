@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem.benchmarks;
+
+import com.cyanogenmod.effem.FavoriteStore;
+import com.cyanogenmod.effem.MenuTuple;
+import com.cyanogenmod.effem.StationListCodec;
+import com.cyanogenmod.effem.StationListFile;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Reading a station list file. lookup() maps the file and reads a single
+ * station, importAll() creates entries for all of them; json() decodes
+ * the same list from the preference string format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StationListFileBenchmark {
+    @Param({"100", "10000"})
+    public int size;
+
+    private File mFile;
+    private String mEncoded;
+
+    @Setup
+    public void setup() throws IOException {
+        List<MenuTuple> stations = new ArrayList<MenuTuple>(size);
+        for (int i = 0; i < size; i++)
+            stations.add(new MenuTuple(70000 + i, "Station " + i));
+        mEncoded = StationListCodec.encode(stations);
+
+        FavoriteStore store = new FavoriteStore();
+        store.putAll(stations);
+        mFile = File.createTempFile("effem", StationListFile.EXTENSION);
+        StationListFile.write(mFile, store);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Benchmark
+    public String lookup() throws IOException {
+        StationListFile file = StationListFile.open(mFile);
+        return file.getName(file.indexOf(70000 + size / 2));
+    }
+
+    @Benchmark
+    public int importAll() throws IOException {
+        FavoriteStore store = new FavoriteStore();
+        StationListFile.open(mFile).addTo(store);
+        return store.size();
+    }
+
+    @Benchmark
+    public int json() throws IOException {
+        return StationListCodec.decode(mEncoded).size();
+    }
+}
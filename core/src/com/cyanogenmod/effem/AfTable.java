@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * RDS alternative frequency (AF) lists of programs, by PI code
+ *
+ * A program is identified by its PI code; all frequencies in its AF list
+ * carry the same program. Candidates for switching are ranked by signal
+ * strength measured earlier, e.g. by scans. Frequencies that didn't work
+ * out are rejected for a while; the time doubles each time the same
+ * frequency is rejected again.
+ */
+public class AfTable {
+    private static final int MAX_PROGRAMS = 64;
+    private static final int MAX_REJECTED = 8;
+    // time a rejected frequency is skipped, in ms
+    private static final long REJECT_TIME = 30 * 1000;
+    private static final long MAX_REJECT_TIME = 16 * REJECT_TIME;
+
+    private final Map<Integer, int[]> mAfLists = new HashMap<Integer, int[]>();
+    // rejected frequencies, 0 for unused slots
+    private final int[] mRejected = new int[MAX_REJECTED];
+    private final long[] mRejectedUntil = new long[MAX_REJECTED];
+    private final long[] mRejectTime = new long[MAX_REJECTED];
+
+    /**
+     * Set the AF list of a program
+     *
+     * @param pi PI code
+     * @param af alternative frequencies in KHz, copied
+     */
+    public synchronized void put(int pi, int[] af) {
+        if (af == null)
+            return;
+        // programs are only learned while listening, this doesn't
+        // grow large, but don't let it grow unbounded either
+        if (mAfLists.size() >= MAX_PROGRAMS && !mAfLists.containsKey(pi))
+            mAfLists.clear();
+        mAfLists.put(pi, af.clone());
+    }
+
+    /**
+     * Get the AF list of a program
+     *
+     * @param pi PI code
+     * @return alternative frequencies in KHz, or null if unknown
+     */
+    public synchronized int[] get(int pi) {
+        int[] af = mAfLists.get(pi);
+        return af != null ? af.clone() : null;
+    }
+
+    public synchronized int size() {
+        return mAfLists.size();
+    }
+
+    public synchronized void clear() {
+        mAfLists.clear();
+        for (int i = 0; i < MAX_REJECTED; i++)
+            mRejected[i] = 0;
+    }
+
+    /**
+     * Don't pick a frequency for a while. Rejecting it again doubles the
+     * time. If all slots are used, the one that expires first is reused.
+     *
+     * @param frequency frequency in KHz
+     * @param now current time in ms, from a monotonic clock
+     */
+    public synchronized void reject(int frequency, long now) {
+        for (int i = 0; i < MAX_REJECTED; i++) {
+            if (mRejected[i] == frequency) {
+                mRejectTime[i] = Math.min(mRejectTime[i] * 2, MAX_REJECT_TIME);
+                mRejectedUntil[i] = now + mRejectTime[i];
+                return;
+            }
+        }
+
+        int slot = 0;
+        for (int i = 0; i < MAX_REJECTED; i++) {
+            if (mRejected[i] == 0) {
+                slot = i;
+                break;
+            }
+            if (mRejectedUntil[i] < mRejectedUntil[slot])
+                slot = i;
+        }
+        mRejected[slot] = frequency;
+        mRejectTime[slot] = REJECT_TIME;
+        mRejectedUntil[slot] = now + REJECT_TIME;
+    }
+
+    /**
+     * Forget a rejection, e.g. after a switch to the frequency worked
+     *
+     * @param frequency frequency in KHz
+     */
+    public synchronized void accept(int frequency) {
+        for (int i = 0; i < MAX_REJECTED; i++) {
+            if (mRejected[i] == frequency)
+                mRejected[i] = 0;
+        }
+    }
+
+    /**
+     * Check whether a frequency is currently rejected
+     *
+     * @param frequency frequency in KHz
+     * @param now current time in ms, from a monotonic clock
+     * @return whether it must not be picked
+     */
+    public synchronized boolean isRejected(int frequency, long now) {
+        for (int i = 0; i < MAX_REJECTED; i++) {
+            if (mRejected[i] == frequency)
+                return mRejectedUntil[i] > now;
+        }
+        return false;
+    }
+
+    /**
+     * Pick the alternative frequency to switch to. Frequencies with a
+     * measured strength are preferred, strongest first; the remaining
+     * ones are tried in the order of the AF list.
+     *
+     * @param pi PI code of the program
+     * @param current current frequency, never picked
+     * @param band band plan, only frequencies in the band are picked
+     * @param strengths measured signal strengths
+     * @param now current time in ms, rejected frequencies are skipped
+     *        until their time has passed
+     * @return frequency in KHz, or -1 if there is no candidate
+     */
+    public synchronized int pick(int pi, int current, BandPlan band, StationTable strengths,
+            long now) {
+        int[] af = mAfLists.get(pi);
+        if (af == null)
+            return -1;
+
+        int best = -1;
+        int bestStrength = Integer.MIN_VALUE;
+        int firstUnmeasured = -1;
+        for (int frequency : af) {
+            if (frequency == current || band.getChannel(frequency) < 0
+                    || isRejected(frequency, now))
+                continue;
+            int index = strengths.indexOf(frequency);
+            if (index < 0) {
+                if (firstUnmeasured < 0)
+                    firstUnmeasured = frequency;
+                continue;
+            }
+            int strength = strengths.getSignalStrength(index);
+            if (strength > bestStrength) {
+                best = frequency;
+                bestStrength = strength;
+            }
+        }
+        return best >= 0 ? best : firstUnmeasured;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+/**
+ * Frequency range and channel raster of an FM band
+ *
+ * This mirrors the parameters of com.stericsson.hardware.fm.FmBand, but
+ * has no dependency on the Android framework.
+ */
+public class BandPlan {
+    // band identifiers, same values as the FmBand constants
+    public static final int BAND_US    = 0;
+    public static final int BAND_EU    = 1;
+    public static final int BAND_JAPAN = 2;
+    public static final int BAND_CHINA = 3;
+
+    private final int mBand;
+    private final int mMinFrequency;
+    private final int mMaxFrequency;
+    private final int mDefaultFrequency;
+    private final int mChannelOffset;
+
+    public BandPlan(int band, int minFrequency, int maxFrequency,
+            int defaultFrequency, int channelOffset) {
+        if (channelOffset <= 0 || maxFrequency < minFrequency)
+            throw new IllegalArgumentException("invalid band parameters");
+
+        mBand = band;
+        mMinFrequency = minFrequency;
+        mMaxFrequency = maxFrequency;
+        mDefaultFrequency = defaultFrequency;
+        mChannelOffset = channelOffset;
+    }
+
+    /**
+     * Get plan for one of the standard bands
+     *
+     * @param band BAND_* constant
+     * @return band plan
+     */
+    public static BandPlan forBand(int band) {
+        switch (band) {
+            case BAND_US:    return new BandPlan(band, 87900, 107900, 87900, 200);
+            case BAND_JAPAN: return new BandPlan(band, 76000, 90000, 76000, 100);
+            case BAND_CHINA: return new BandPlan(band, 70000, 108000, 70000, 50);
+            case BAND_EU:
+            default:         return new BandPlan(BAND_EU, 87500, 108000, 87500, 100);
+        }
+    }
+
+    public int getBand() {
+        return mBand;
+    }
+
+    public int getMinFrequency() {
+        return mMinFrequency;
+    }
+
+    public int getMaxFrequency() {
+        return mMaxFrequency;
+    }
+
+    public int getDefaultFrequency() {
+        return mDefaultFrequency;
+    }
+
+    public int getChannelOffset() {
+        return mChannelOffset;
+    }
+
+    /**
+     * Number of channels in the band
+     */
+    public int getChannelCount() {
+        return (mMaxFrequency - mMinFrequency) / mChannelOffset + 1;
+    }
+
+    /**
+     * Channel index of a frequency
+     *
+     * @param frequency frequency in KHz
+     * @return channel index, or -1 if the frequency is not on the raster
+     */
+    public int getChannel(int frequency) {
+        if (!isFrequencyValid(frequency))
+            return -1;
+        return (frequency - mMinFrequency) / mChannelOffset;
+    }
+
+    /**
+     * Frequency of a channel index
+     *
+     * @param channel channel index in 0..getChannelCount()-1
+     * @return frequency in KHz
+     */
+    public int getFrequency(int channel) {
+        return mMinFrequency + channel * mChannelOffset;
+    }
+
+    /**
+     * Check whether a frequency lies within the band and on the raster
+     *
+     * @param frequency frequency in KHz
+     * @return validity
+     */
+    public boolean isFrequencyValid(int frequency) {
+        return frequency >= mMinFrequency && frequency <= mMaxFrequency
+                && (frequency - mMinFrequency) % mChannelOffset == 0;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import java.util.ArrayDeque;
+
+/**
+ * Executes receiver commands one at a time on a worker thread
+ *
+ * Commands are picked by priority: urgent commands (stop, pause) first,
+ * then normal commands in submission order, then tuning. Only the latest
+ * tuning command is kept; submitting a new one supersedes the pending
+ * one, and so does any urgent command. This way a burst of taps results
+ * in a single retune instead of a queue of stale ones.
+ */
+public class CommandScheduler {
+    public static final int PRIORITY_URGENT = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_TUNE   = 2;
+
+    /**
+     * Command execution reports, called on the worker thread
+     */
+    public interface Listener {
+        /**
+         * A command has been executed
+         *
+         * @param name command name
+         * @param queuedNanos time between submission and start of execution
+         * @param executionNanos execution time
+         */
+        public void onCommandExecuted(String name, long queuedNanos, long executionNanos);
+
+        /**
+         * A command threw an exception, the scheduler keeps running
+         *
+         * @param name command name
+         * @param e exception
+         */
+        public void onCommandFailed(String name, RuntimeException e);
+    }
+
+    private static class Entry {
+        final String name;
+        final Runnable command;
+        final long submitTime;
+
+        Entry(String name, Runnable command) {
+            this.name = name;
+            this.command = command;
+            this.submitTime = System.nanoTime();
+        }
+    }
+
+    private final Thread mThread;
+    private final Listener mListener;
+
+    // guarded by this
+    private final ArrayDeque<Entry> mUrgent = new ArrayDeque<Entry>();
+    private final ArrayDeque<Entry> mNormal = new ArrayDeque<Entry>();
+    private Entry mTune;
+    private boolean mQuit;
+    private int mExecutedCount;
+    private int mSupersededCount;
+
+    /**
+     * Create scheduler and start its worker thread
+     *
+     * @param name worker thread name
+     * @param listener execution reports, or null
+     */
+    public CommandScheduler(String name, Listener listener) {
+        mListener = listener;
+        mThread = new Thread(new Runnable() {
+            public void run() {
+                loop();
+            }
+        }, name);
+        mThread.start();
+    }
+
+    /**
+     * Submit a command
+     *
+     * @param priority PRIORITY_* constant
+     * @param name command name for reports
+     * @param command command
+     * @return false if the scheduler has been shut down
+     */
+    public synchronized boolean submit(int priority, String name, Runnable command) {
+        if (mQuit)
+            return false;
+
+        Entry entry = new Entry(name, command);
+        switch (priority) {
+        case PRIORITY_URGENT:
+            // tuning that was requested before is obsolete
+            if (mTune != null) {
+                mTune = null;
+                mSupersededCount++;
+            }
+            mUrgent.add(entry);
+            break;
+        case PRIORITY_TUNE:
+            if (mTune != null)
+                mSupersededCount++;
+            mTune = entry;
+            break;
+        default:
+            mNormal.add(entry);
+            break;
+        }
+        notify();
+        return true;
+    }
+
+    /**
+     * Check whether the caller runs on the worker thread
+     */
+    public boolean isWorkerThread() {
+        return Thread.currentThread() == mThread;
+    }
+
+    /**
+     * Number of executed commands
+     */
+    public synchronized int getExecutedCount() {
+        return mExecutedCount;
+    }
+
+    /**
+     * Number of tuning commands dropped because a newer command replaced them
+     */
+    public synchronized int getSupersededCount() {
+        return mSupersededCount;
+    }
+
+    /**
+     * Shut down. Pending urgent and normal commands are still executed,
+     * pending tuning is dropped. Returns immediately.
+     */
+    public synchronized void quit() {
+        mQuit = true;
+        if (mTune != null) {
+            mTune = null;
+            mSupersededCount++;
+        }
+        notify();
+    }
+
+    private synchronized Entry next() throws InterruptedException {
+        while (true) {
+            Entry entry = mUrgent.poll();
+            if (entry == null)
+                entry = mNormal.poll();
+            if (entry == null && mTune != null) {
+                entry = mTune;
+                mTune = null;
+            }
+            if (entry != null || mQuit)
+                return entry;
+            wait();
+        }
+    }
+
+    private void loop() {
+        while (true) {
+            Entry entry;
+            try {
+                entry = next();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (entry == null)
+                return;
+
+            long start = System.nanoTime();
+            try {
+                entry.command.run();
+            } catch (RuntimeException e) {
+                if (mListener != null)
+                    mListener.onCommandFailed(entry.name, e);
+            }
+            long end = System.nanoTime();
+
+            synchronized (this) {
+                mExecutedCount++;
+            }
+            if (mListener != null)
+                mListener.onCommandExecuted(entry.name, start - entry.submitTime, end - start);
+        }
+    }
+}
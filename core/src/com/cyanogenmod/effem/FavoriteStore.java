@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Favorite stations, sorted by frequency with at most one entry per
+ * frequency
+ *
+ * Frequencies are indexed in a sorted primitive array, so membership
+ * tests are a binary search. Inserting and removing move the tail of
+ * the arrays with System.arraycopy instead of resorting.
+ *
+ * Entries must not be modified while they are in the store.
+ */
+public class FavoriteStore {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] mFrequencies;
+    private MenuTuple[] mEntries;
+    private int mSize;
+
+    public FavoriteStore() {
+        mFrequencies = new int[DEFAULT_CAPACITY];
+        mEntries = new MenuTuple[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Number of favorites
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Favorite at given index, in ascending frequency order
+     *
+     * @param index index in 0..size()-1
+     * @return entry
+     */
+    public MenuTuple get(int index) {
+        if (index < 0 || index >= mSize)
+            throw new IndexOutOfBoundsException("index " + index + ", size " + mSize);
+        return mEntries[index];
+    }
+
+    /**
+     * Find a favorite by frequency
+     *
+     * @param frequency frequency in KHz
+     * @return index of the favorite, or (-(insertion point) - 1) if not found
+     */
+    public int indexOf(int frequency) {
+        int lo = 0;
+        int hi = mSize - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int f = mFrequencies[mid];
+            if (f < frequency)
+                lo = mid + 1;
+            else if (f > frequency)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -(lo + 1);
+    }
+
+    public boolean contains(int frequency) {
+        return indexOf(frequency) >= 0;
+    }
+
+    /**
+     * Add a favorite, replacing an existing one with the same frequency
+     *
+     * @param entry favorite
+     * @return whether the frequency was new
+     */
+    public boolean put(MenuTuple entry) {
+        // lists are usually added in order, so try appending first
+        int index;
+        if (mSize == 0 || mFrequencies[mSize - 1] < entry.frequency)
+            index = -(mSize + 1);
+        else
+            index = indexOf(entry.frequency);
+
+        if (index >= 0) {
+            mEntries[index] = entry;
+            return false;
+        }
+
+        index = -(index + 1);
+        ensureCapacity(mSize + 1);
+        System.arraycopy(mFrequencies, index, mFrequencies, index + 1, mSize - index);
+        System.arraycopy(mEntries, index, mEntries, index + 1, mSize - index);
+        mFrequencies[index] = entry.frequency;
+        mEntries[index] = entry;
+        mSize++;
+        return true;
+    }
+
+    /**
+     * Add several favorites
+     *
+     * @param entries favorites, preferably in ascending frequency order
+     */
+    public void putAll(List<MenuTuple> entries) {
+        ensureCapacity(mSize + entries.size());
+        for (MenuTuple entry : entries)
+            put(entry);
+    }
+
+    /**
+     * Remove a favorite
+     *
+     * @param frequency frequency in KHz
+     * @return whether a favorite was removed
+     */
+    public boolean remove(int frequency) {
+        int index = indexOf(frequency);
+        if (index < 0)
+            return false;
+
+        mSize--;
+        System.arraycopy(mFrequencies, index + 1, mFrequencies, index, mSize - index);
+        System.arraycopy(mEntries, index + 1, mEntries, index, mSize - index);
+        mEntries[mSize] = null;
+        return true;
+    }
+
+    /**
+     * Remove all favorites
+     */
+    public void clear() {
+        for (int i = 0; i < mSize; i++)
+            mEntries[i] = null;
+        mSize = 0;
+    }
+
+    /**
+     * Copy favorites into a list, e.g. for saving
+     *
+     * @return new list in ascending frequency order
+     */
+    public List<MenuTuple> toList() {
+        List<MenuTuple> list = new ArrayList<MenuTuple>(mSize);
+        for (int i = 0; i < mSize; i++)
+            list.add(mEntries[i]);
+        return list;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mFrequencies.length)
+            return;
+
+        int newCapacity = Math.max(capacity, mFrequencies.length * 2);
+        int[] frequencies = new int[newCapacity];
+        MenuTuple[] entries = new MenuTuple[newCapacity];
+        System.arraycopy(mFrequencies, 0, frequencies, 0, mSize);
+        System.arraycopy(mEntries, 0, entries, 0, mSize);
+        mFrequencies = frequencies;
+        mEntries = entries;
+    }
+}
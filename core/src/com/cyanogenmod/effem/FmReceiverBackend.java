@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import java.io.IOException;
+
+/**
+ * FM tuner as seen by FmRadioService
+ *
+ * The interface follows com.stericsson.hardware.fm.FmReceiver closely,
+ * but doesn't depend on the Android framework, so implementations can
+ * be driven from a plain JVM.
+ */
+public interface FmReceiverBackend {
+    // receiver states, same values as the FmReceiver constants
+    public static final int STATE_IDLE     = 0;
+    public static final int STATE_STARTING = 1;
+    public static final int STATE_STARTED  = 2;
+    public static final int STATE_PAUSED   = 3;
+    public static final int STATE_SCANNING = 4;
+
+    // scan directions
+    public static final int SCAN_DOWN = 0;
+    public static final int SCAN_UP   = 1;
+
+    /**
+     * Receiver events. Listeners may be called on any thread.
+     */
+    public interface Listener {
+        /**
+         * Asynchronous start completed
+         */
+        public void onStarted();
+
+        /**
+         * Seek completed or aborted
+         *
+         * @param tunedFrequency frequency in KHz the receiver stopped at
+         * @param signalStrength signal strength at that frequency
+         * @param scanDirection SCAN_UP or SCAN_DOWN
+         * @param aborted whether the seek was stopped
+         */
+        public void onScan(int tunedFrequency, int signalStrength,
+                int scanDirection, boolean aborted);
+
+        /**
+         * Full band scan completed or aborted
+         *
+         * @param frequency frequencies found in KHz
+         * @param signalStrength signal strengths of found frequencies
+         * @param aborted whether the scan was stopped
+         */
+        public void onFullScan(int[] frequency, int[] signalStrength, boolean aborted);
+
+        /**
+         * RDS data has been decoded
+         *
+         * @param rdsData decoded data
+         * @param frequency frequency in KHz the data belongs to
+         */
+        public void onRdsDataFound(RdsData rdsData, int frequency);
+    }
+
+    /**
+     * Get band parameters as supported by this backend
+     *
+     * @param band BandPlan.BAND_* constant
+     * @return band plan
+     */
+    public BandPlan getBandPlan(int band);
+
+    /**
+     * Start receiver (blocking)
+     *
+     * @param band band to use
+     */
+    public void start(BandPlan band) throws IOException;
+
+    /**
+     * Switch a started receiver to another band without restarting it.
+     * The receiver is left at the default frequency of the band.
+     *
+     * @param band band to use
+     * @return whether the band was switched; if not, the receiver must
+     *         be restarted to change the band
+     */
+    public boolean setBand(BandPlan band) throws IOException;
+
+    /**
+     * Stop receiver and return to idle state
+     */
+    public void reset() throws IOException;
+
+    public void pause() throws IOException;
+
+    public void resume() throws IOException;
+
+    /**
+     * Get current state
+     *
+     * @return STATE_* constant
+     */
+    public int getState();
+
+    public int getFrequency() throws IOException;
+
+    public void setFrequency(int frequency) throws IOException;
+
+    /**
+     * Seek to next station above current frequency, result is reported
+     * via Listener.onScan
+     */
+    public void scanUp();
+
+    /**
+     * Seek to next station below current frequency, result is reported
+     * via Listener.onScan
+     */
+    public void scanDown();
+
+    /**
+     * Scan the whole band, result is reported via Listener.onFullScan.
+     * Backends may also report each station via Listener.onScan when the
+     * sweep reaches it; the Stericsson receiver only reports the final
+     * result.
+     */
+    public void startFullScan();
+
+    /**
+     * Stop a running seek or full scan
+     */
+    public void stopScan();
+
+    public int getSignalStrength() throws IOException;
+
+    /**
+     * Set event listener
+     *
+     * @param listener listener, or null to unregister
+     */
+    public void setListener(Listener listener);
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *               2013 Grigori Goronzy <greg@chown.ath.cx>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+/**
+ * Frequency display formatting
+ *
+ * An instance holds precomputed labels for every channel of a band, so
+ * formatting a frequency on the band raster is a table lookup and doesn't
+ * allocate.
+ */
+public class FrequencyFormatter {
+    public static final int CHANNEL_OFFSET_50KHZ = 50;
+    public static final String UNIT = " MHz";
+
+    private final BandPlan mBand;
+    private final int mDecimals;
+    private final String[] mLabels;
+    private final String[] mUnitLabels;
+
+    /**
+     * Create formatter with labels for all channels of a band
+     *
+     * @param band band plan
+     */
+    public FrequencyFormatter(BandPlan band) {
+        mBand = band;
+        mDecimals = getDecimals(band.getChannelOffset());
+
+        int channels = band.getChannelCount();
+        mLabels = new String[channels];
+        mUnitLabels = new String[channels];
+        StringBuilder sb = new StringBuilder(16);
+        for (int i = 0; i < channels; i++) {
+            sb.setLength(0);
+            append(sb, band.getFrequency(i), mDecimals);
+            mLabels[i] = sb.toString();
+            sb.append(UNIT);
+            mUnitLabels[i] = sb.toString();
+        }
+    }
+
+    public BandPlan getBandPlan() {
+        return mBand;
+    }
+
+    /**
+     * Format frequency, e.g. "87.5"
+     *
+     * @param frequency frequency in KHz
+     * @return formatted string
+     */
+    public String format(int frequency) {
+        int channel = mBand.getChannel(frequency);
+        if (channel >= 0)
+            return mLabels[channel];
+        return format(mBand.getChannelOffset(), frequency);
+    }
+
+    /**
+     * Format frequency with unit, e.g. "87.5 MHz"
+     *
+     * @param frequency frequency in KHz
+     * @return formatted string
+     */
+    public String formatWithUnit(int frequency) {
+        int channel = mBand.getChannel(frequency);
+        if (channel >= 0)
+            return mUnitLabels[channel];
+        return format(mBand.getChannelOffset(), frequency) + UNIT;
+    }
+
+    /**
+     * Append formatted frequency to a buffer, without allocation
+     *
+     * @param sb buffer
+     * @param frequency frequency in KHz
+     */
+    public void append(StringBuilder sb, int frequency) {
+        int channel = mBand.getChannel(frequency);
+        if (channel >= 0)
+            sb.append(mLabels[channel]);
+        else
+            append(sb, frequency, mDecimals);
+    }
+
+    /**
+     * Format frequency in KHz to humanly readable format
+     *
+     * @param offset channel offset in KHz
+     * @param frequency frequency in KHz
+     * @return formatted string
+     */
+    public static String format(int offset, int frequency) {
+        StringBuilder sb = new StringBuilder(8);
+        append(sb, frequency, getDecimals(offset));
+        return sb.toString();
+    }
+
+    /**
+     * Number of decimals needed to show a channel raster in MHz
+     */
+    private static int getDecimals(int offset) {
+        return offset % 100 == 0 ? 1 : 2;
+    }
+
+    private static void append(StringBuilder sb, int frequency, int decimals) {
+        if (frequency < 0) {
+            sb.append('-');
+            frequency = -frequency;
+        }
+        sb.append(frequency / 1000).append('.');
+
+        // decimals are truncated, channels never have finer resolution
+        int fraction = frequency % 1000;
+        sb.append((char) ('0' + fraction / 100));
+        if (decimals > 1)
+            sb.append((char) ('0' + fraction / 10 % 10));
+    }
+}
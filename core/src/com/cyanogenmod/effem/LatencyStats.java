@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+/**
+ * Running count, average, minimum and maximum of measured durations
+ */
+public class LatencyStats {
+    private int mCount;
+    private long mTotal;
+    private long mMin;
+    private long mMax;
+
+    /**
+     * Add a measurement
+     *
+     * @param nanos duration in nanoseconds
+     */
+    public synchronized void record(long nanos) {
+        if (mCount == 0 || nanos < mMin)
+            mMin = nanos;
+        if (mCount == 0 || nanos > mMax)
+            mMax = nanos;
+        mTotal += nanos;
+        mCount++;
+    }
+
+    /**
+     * Number of measurements
+     */
+    public synchronized int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return average duration in nanoseconds, 0 without measurements
+     */
+    public synchronized long getAverage() {
+        return mCount > 0 ? mTotal / mCount : 0;
+    }
+
+    /**
+     * @return shortest duration in nanoseconds, 0 without measurements
+     */
+    public synchronized long getMin() {
+        return mMin;
+    }
+
+    /**
+     * @return longest duration in nanoseconds, 0 without measurements
+     */
+    public synchronized long getMax() {
+        return mMax;
+    }
+
+    public synchronized void reset() {
+        mCount = 0;
+        mTotal = mMin = mMax = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return mCount + " x, avg " + getAverage() / 1000 + " us, min " + mMin / 1000
+                + " us, max " + mMax / 1000 + " us";
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *               2013 Grigori Goronzy <greg@chown.ath.cx>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+/**
+ * Favorite station entry
+ */
+public class MenuTuple {
+    /** Maximum name length in characters, longer names are cut off */
+    public static final int MAX_NAME_LENGTH = 256;
+
+    public int frequency;
+    public String name;
+
+    public MenuTuple(int frequency, String name) {
+        this.frequency = frequency;
+        this.name = limitName(name);
+    }
+
+    /**
+     * Cut off a name at MAX_NAME_LENGTH characters. Names can come from
+     * imported files, this keeps them within what can be persisted.
+     *
+     * @param name name, may be null
+     * @return name of at most MAX_NAME_LENGTH characters
+     */
+    public static String limitName(String name) {
+        if (name == null || name.length() <= MAX_NAME_LENGTH)
+            return name;
+        return name.substring(0, MAX_NAME_LENGTH);
+    }
+
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+/**
+ * Index of the RDS program type (PTY) of stations in one band
+ *
+ * Keeps a sorted frequency list for each of the 32 program types, so
+ * that the next station of a type is found by binary search.
+ */
+public class PtyIndex {
+    public static final int PTY_COUNT = 32;
+
+    private static final int DEFAULT_CAPACITY = 8;
+
+    // indexed frequencies, ascending, and their program types
+    private int[] mStations = new int[DEFAULT_CAPACITY];
+    private int[] mStationPtys = new int[DEFAULT_CAPACITY];
+    private int mSize;
+
+    // frequencies of each program type, ascending
+    private final int[][] mFrequencies = new int[PTY_COUNT][];
+    private final int[] mCounts = new int[PTY_COUNT];
+
+    /**
+     * Number of indexed stations
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Number of indexed stations with a program type
+     *
+     * @param pty program type in 0..31
+     * @return number of stations
+     */
+    public synchronized int count(int pty) {
+        return pty >= 0 && pty < PTY_COUNT ? mCounts[pty] : 0;
+    }
+
+    /**
+     * Program type of a station
+     *
+     * @param frequency frequency in KHz
+     * @return program type, or -1 if the station isn't indexed
+     */
+    public synchronized int getPty(int frequency) {
+        int index = indexOf(mStations, mSize, frequency);
+        return index >= 0 ? mStationPtys[index] : -1;
+    }
+
+    /**
+     * Set the program type of a station
+     *
+     * @param frequency frequency in KHz
+     * @param pty program type in 0..31
+     */
+    public synchronized void put(int frequency, int pty) {
+        if (pty < 0 || pty >= PTY_COUNT)
+            return;
+
+        int index = indexOf(mStations, mSize, frequency);
+        if (index >= 0) {
+            int old = mStationPtys[index];
+            if (old == pty)
+                return;
+            removeFrom(old, frequency);
+            mStationPtys[index] = pty;
+        } else {
+            index = -(index + 1);
+            if (mSize == mStations.length) {
+                int[] stations = new int[mSize * 2];
+                int[] ptys = new int[mSize * 2];
+                System.arraycopy(mStations, 0, stations, 0, mSize);
+                System.arraycopy(mStationPtys, 0, ptys, 0, mSize);
+                mStations = stations;
+                mStationPtys = ptys;
+            }
+            System.arraycopy(mStations, index, mStations, index + 1, mSize - index);
+            System.arraycopy(mStationPtys, index, mStationPtys, index + 1, mSize - index);
+            mStations[index] = frequency;
+            mStationPtys[index] = pty;
+            mSize++;
+        }
+        addTo(pty, frequency);
+    }
+
+    /**
+     * Remove a station
+     *
+     * @param frequency frequency in KHz
+     */
+    public synchronized void remove(int frequency) {
+        int index = indexOf(mStations, mSize, frequency);
+        if (index < 0)
+            return;
+        removeFrom(mStationPtys[index], frequency);
+
+        mSize--;
+        System.arraycopy(mStations, index + 1, mStations, index, mSize - index);
+        System.arraycopy(mStationPtys, index + 1, mStationPtys, index, mSize - index);
+    }
+
+    /**
+     * Find the next station with a program type, wrapping around at the
+     * band edges
+     *
+     * @param frequency frequency to start from, in KHz
+     * @param pty program type in 0..31
+     * @param up whether to search upwards
+     * @return frequency of the station, or -1 if no other station has
+     *         this program type
+     */
+    public synchronized int next(int frequency, int pty, boolean up) {
+        if (pty < 0 || pty >= PTY_COUNT)
+            return -1;
+        int count = mCounts[pty];
+        int[] frequencies = mFrequencies[pty];
+
+        int index = indexOf(frequencies, count, frequency);
+        int next;
+        if (up)
+            next = index >= 0 ? index + 1 : -(index + 1);
+        else
+            next = (index >= 0 ? index : -(index + 1)) - 1;
+        next = (next + count) % Math.max(count, 1);
+
+        if (count == 0 || frequencies[next] == frequency)
+            return -1;
+        return frequencies[next];
+    }
+
+    /**
+     * Remove all stations that aren't in a table, e.g. after a full scan
+     * didn't find them anymore
+     *
+     * @param stations stations to keep
+     */
+    public synchronized void retainAll(StationTable stations) {
+        int size = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (stations.indexOf(mStations[i]) < 0) {
+                removeFrom(mStationPtys[i], mStations[i]);
+                continue;
+            }
+            mStations[size] = mStations[i];
+            mStationPtys[size] = mStationPtys[i];
+            size++;
+        }
+        mSize = size;
+    }
+
+    /**
+     * Remove all stations
+     */
+    public synchronized void clear() {
+        mSize = 0;
+        for (int i = 0; i < PTY_COUNT; i++)
+            mCounts[i] = 0;
+    }
+
+    private void addTo(int pty, int frequency) {
+        int count = mCounts[pty];
+        int[] frequencies = mFrequencies[pty];
+        if (frequencies == null || count == frequencies.length) {
+            int[] grown = new int[Math.max(DEFAULT_CAPACITY, count * 2)];
+            if (frequencies != null)
+                System.arraycopy(frequencies, 0, grown, 0, count);
+            mFrequencies[pty] = frequencies = grown;
+        }
+
+        int index = -(indexOf(frequencies, count, frequency) + 1);
+        System.arraycopy(frequencies, index, frequencies, index + 1, count - index);
+        frequencies[index] = frequency;
+        mCounts[pty] = count + 1;
+    }
+
+    private void removeFrom(int pty, int frequency) {
+        int count = mCounts[pty];
+        int[] frequencies = mFrequencies[pty];
+        int index = indexOf(frequencies, count, frequency);
+        if (index < 0)
+            return;
+        System.arraycopy(frequencies, index + 1, frequencies, index, count - index - 1);
+        mCounts[pty] = count - 1;
+    }
+
+    private static int indexOf(int[] frequencies, int count, int frequency) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int f = frequencies[mid];
+            if (f < frequency)
+                lo = mid + 1;
+            else if (f > frequency)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -(lo + 1);
+    }
+}
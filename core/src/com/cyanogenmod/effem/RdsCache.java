@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Last known RDS station identity (PI, PSN, PTY, RT) per band and
+ * frequency, with least recently used eviction
+ *
+ * Entries live in parallel arrays of fixed capacity, indexed by an open
+ * addressing hash table on primitive keys, so lookups don't allocate.
+ * The cache can be written to and read from a stream to persist it.
+ */
+public class RdsCache {
+    private static final int MAGIC = 0x52445343; // "RDSC"
+    private static final int VERSION = 1;
+
+    // fields that are cached
+    private static final int CACHED_FIELDS = RdsData.FIELD_PSN | RdsData.FIELD_RT
+            | RdsData.FIELD_PTY | RdsData.FIELD_PI;
+
+    private final int mCapacity;
+    private final int[] mKeys;
+    private final int[] mFields;
+    private final String[] mPsn;
+    private final String[] mRt;
+    private final int[] mPty;
+    private final int[] mPi;
+
+    // LRU list, head is the most recently used entry
+    private final int[] mPrev;
+    private final int[] mNext;
+    private int mHead = -1;
+    private int mTail = -1;
+    private int mSize;
+
+    // hash slots, holding entry index + 1 or 0 if empty
+    private final int[] mSlots;
+    private final int mMask;
+
+    /**
+     * @param capacity maximum number of entries
+     */
+    public RdsCache(int capacity) {
+        mCapacity = Math.max(capacity, 1);
+        mKeys = new int[mCapacity];
+        mFields = new int[mCapacity];
+        mPsn = new String[mCapacity];
+        mRt = new String[mCapacity];
+        mPty = new int[mCapacity];
+        mPi = new int[mCapacity];
+        mPrev = new int[mCapacity];
+        mNext = new int[mCapacity];
+
+        // keep load factor at or below 0.5
+        int slots = Integer.highestOneBit(mCapacity * 2 - 1) << 1;
+        mSlots = new int[slots];
+        mMask = slots - 1;
+    }
+
+    private static int key(int band, int frequency) {
+        return (band << 24) | (frequency & 0xffffff);
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & mMask;
+    }
+
+    /**
+     * Number of cached entries
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Look up cached data. A hit counts as use of the entry.
+     *
+     * @param band band identifier
+     * @param frequency frequency in KHz
+     * @param out receives the cached fields
+     * @return whether an entry was found
+     */
+    public synchronized boolean get(int band, int frequency, RdsData out) {
+        int index = find(key(band, frequency));
+        if (index < 0)
+            return false;
+
+        moveToHead(index);
+        out.fields = mFields[index];
+        out.psn = mPsn[index];
+        out.rt = mRt[index];
+        out.pty = mPty[index];
+        out.pi = mPi[index];
+        out.af = null;
+        return true;
+    }
+
+    /**
+     * Look up the cached program type. Unlike get(), this doesn't count
+     * as use of the entry, so browsing stations doesn't reorder the
+     * cache.
+     *
+     * @param band band identifier
+     * @param frequency frequency in KHz
+     * @return program type, or -1 if none is cached
+     */
+    public synchronized int getPty(int band, int frequency) {
+        int index = find(key(band, frequency));
+        if (index < 0 || (mFields[index] & RdsData.FIELD_PTY) == 0)
+            return -1;
+        return mPty[index];
+    }
+
+    /**
+     * Store RDS state of a frequency
+     *
+     * @param band band identifier
+     * @param state RDS state, its frequency is used as key
+     */
+    public synchronized void put(int band, RdsState state) {
+        int fields = state.getFields() & CACHED_FIELDS;
+        if (fields == 0)
+            return;
+        put(key(band, state.getFrequency()), fields, state.getPsn(), state.getRt(),
+                state.getPty(), state.getPi());
+    }
+
+    /**
+     * Add the frequencies of all cached stations of a band to a table.
+     * Stations already in the table keep their signal strength, new ones
+     * get a strength of 0. This doesn't count as use of the entries.
+     *
+     * @param band band identifier
+     * @param table table to add to
+     */
+    public synchronized void addFrequencies(int band, StationTable table) {
+        for (int index = mHead; index >= 0; index = mNext[index]) {
+            if ((mKeys[index] >>> 24) != band)
+                continue;
+            int frequency = mKeys[index] & 0xffffff;
+            if (table.indexOf(frequency) < 0)
+                table.put(frequency, 0);
+        }
+    }
+
+    /**
+     * Add the program types of all cached stations of a band to an index.
+     * Stations already in the index keep their program type. This doesn't
+     * count as use of the entries.
+     *
+     * @param band band identifier
+     * @param index index to add to
+     */
+    public synchronized void addPtys(int band, PtyIndex index) {
+        for (int i = mHead; i >= 0; i = mNext[i]) {
+            if ((mKeys[i] >>> 24) != band || (mFields[i] & RdsData.FIELD_PTY) == 0)
+                continue;
+            int frequency = mKeys[i] & 0xffffff;
+            if (index.getPty(frequency) < 0)
+                index.put(frequency, mPty[i]);
+        }
+    }
+
+    /**
+     * Remove all entries
+     */
+    public synchronized void clear() {
+        Arrays.fill(mSlots, 0);
+        Arrays.fill(mPsn, null);
+        Arrays.fill(mRt, null);
+        mHead = mTail = -1;
+        mSize = 0;
+    }
+
+    /**
+     * Write all entries, least recently used first
+     *
+     * @param out output stream
+     */
+    public synchronized void write(OutputStream out) throws IOException {
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        dos.writeInt(mSize);
+        for (int i = mTail; i >= 0; i = mPrev[i]) {
+            dos.writeInt(mKeys[i]);
+            dos.writeInt(mFields[i]);
+            dos.writeUTF(mPsn[i] != null ? mPsn[i] : "");
+            dos.writeUTF(mRt[i] != null ? mRt[i] : "");
+            dos.writeInt(mPty[i]);
+            dos.writeInt(mPi[i]);
+        }
+        dos.flush();
+    }
+
+    /**
+     * Read entries written by write(), adding them to the cache
+     *
+     * @param in input stream
+     * @throws IOException on read error or invalid data
+     */
+    public synchronized void read(InputStream in) throws IOException {
+        DataInputStream dis = new DataInputStream(in);
+        if (dis.readInt() != MAGIC || dis.readInt() != VERSION)
+            throw new IOException("invalid RDS cache data");
+
+        int count = dis.readInt();
+        for (int i = 0; i < count; i++) {
+            int key = dis.readInt();
+            int fields = dis.readInt() & CACHED_FIELDS;
+            String psn = dis.readUTF();
+            String rt = dis.readUTF();
+            int pty = dis.readInt();
+            int pi = dis.readInt();
+            if (fields != 0) {
+                put(key, fields, (fields & RdsData.FIELD_PSN) != 0 ? psn : null,
+                        (fields & RdsData.FIELD_RT) != 0 ? rt : null, pty, pi);
+            }
+        }
+    }
+
+    private void put(int key, int fields, String psn, String rt, int pty, int pi) {
+        int index = find(key);
+        if (index < 0) {
+            if (mSize < mCapacity) {
+                index = mSize++;
+            } else {
+                // evict least recently used entry and reuse its storage
+                index = mTail;
+                removeSlot(mKeys[index]);
+                unlink(index);
+            }
+            mKeys[index] = key;
+            insertSlot(key, index);
+            linkHead(index);
+        } else {
+            moveToHead(index);
+        }
+
+        mFields[index] = fields;
+        mPsn[index] = psn;
+        mRt[index] = rt;
+        mPty[index] = pty;
+        mPi[index] = pi;
+    }
+
+    private int find(int key) {
+        for (int s = slot(key); mSlots[s] != 0; s = (s + 1) & mMask) {
+            int index = mSlots[s] - 1;
+            if (mKeys[index] == key)
+                return index;
+        }
+        return -1;
+    }
+
+    private void insertSlot(int key, int index) {
+        int s = slot(key);
+        while (mSlots[s] != 0)
+            s = (s + 1) & mMask;
+        mSlots[s] = index + 1;
+    }
+
+    private void removeSlot(int key) {
+        int s = slot(key);
+        while (mKeys[mSlots[s] - 1] != key)
+            s = (s + 1) & mMask;
+
+        // shift back following entries of the probe sequence
+        int free = s;
+        for (int next = (free + 1) & mMask; mSlots[next] != 0; next = (next + 1) & mMask) {
+            int home = slot(mKeys[mSlots[next] - 1]);
+            boolean movable = free <= next
+                    ? (home <= free || home > next)
+                    : (home <= free && home > next);
+            if (movable) {
+                mSlots[free] = mSlots[next];
+                free = next;
+            }
+        }
+        mSlots[free] = 0;
+    }
+
+    private void moveToHead(int index) {
+        if (index == mHead)
+            return;
+        unlink(index);
+        linkHead(index);
+    }
+
+    private void linkHead(int index) {
+        mPrev[index] = -1;
+        mNext[index] = mHead;
+        if (mHead >= 0)
+            mPrev[mHead] = index;
+        mHead = index;
+        if (mTail < 0)
+            mTail = index;
+    }
+
+    private void unlink(int index) {
+        int prev = mPrev[index];
+        int next = mNext[index];
+        if (prev >= 0)
+            mNext[prev] = next;
+        else
+            mHead = next;
+        if (next >= 0)
+            mPrev[next] = prev;
+        else
+            mTail = prev;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+/**
+ * RDS data decoded by a receiver backend
+ *
+ * Only the fields flagged in {@link #fields} carry valid values.
+ */
+public class RdsData {
+    // field flags
+    public static final int FIELD_PSN = 1 << 0;
+    public static final int FIELD_RT  = 1 << 1;
+    public static final int FIELD_PTY = 1 << 2;
+    public static final int FIELD_PI  = 1 << 3;
+    public static final int FIELD_AF  = 1 << 4;
+
+    public int fields;
+    public String psn;
+    public String rt;
+    public int pty;
+    public int pi;
+    public int[] af;
+
+    /**
+     * Check whether a field is present
+     *
+     * @param field FIELD_* constant
+     * @return presence
+     */
+    public boolean has(int field) {
+        return (fields & field) != 0;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import java.util.Arrays;
+
+/**
+ * Accumulated RDS state of one frequency
+ *
+ * Incoming RDS groups are merged field by field, and merging reports
+ * which fields actually changed. Most groups repeat data that is already
+ * known; those are detected without allocating.
+ *
+ * Field flags are the RdsData.FIELD_* constants.
+ */
+public class RdsState {
+    private int mFrequency;
+    private int mFields;
+
+    // PSN and RT as received, and trimmed for display
+    private String mPsnRaw;
+    private String mPsn;
+    private String mRtRaw;
+    private String mRt;
+    private int mPty;
+    private int mPi;
+    private int[] mAf;
+
+    /**
+     * Forget all fields and start collecting data for a frequency
+     *
+     * @param frequency frequency in KHz
+     */
+    public void reset(int frequency) {
+        mFrequency = frequency;
+        mFields = 0;
+        mPsnRaw = mPsn = null;
+        mRtRaw = mRt = null;
+        mPty = 0;
+        mPi = 0;
+        mAf = null;
+    }
+
+    /**
+     * Merge decoded RDS data
+     *
+     * @param data decoded data
+     * @return mask of fields that changed
+     */
+    public int merge(RdsData data) {
+        int changed = 0;
+
+        if (data.has(RdsData.FIELD_PSN) && data.psn != null
+                && !data.psn.equals(mPsnRaw)) {
+            mPsnRaw = data.psn;
+            String psn = data.psn.trim();
+            if (!psn.equals(mPsn) || !has(RdsData.FIELD_PSN)) {
+                mPsn = psn;
+                changed |= RdsData.FIELD_PSN;
+            }
+        }
+
+        if (data.has(RdsData.FIELD_RT) && data.rt != null
+                && !data.rt.equals(mRtRaw)) {
+            mRtRaw = data.rt;
+            String rt = data.rt.trim();
+            if (!rt.equals(mRt) || !has(RdsData.FIELD_RT)) {
+                mRt = rt;
+                changed |= RdsData.FIELD_RT;
+            }
+        }
+
+        if (data.has(RdsData.FIELD_PTY)
+                && (data.pty != mPty || !has(RdsData.FIELD_PTY))) {
+            mPty = data.pty;
+            changed |= RdsData.FIELD_PTY;
+        }
+
+        if (data.has(RdsData.FIELD_PI)
+                && (data.pi != mPi || !has(RdsData.FIELD_PI))) {
+            mPi = data.pi;
+            changed |= RdsData.FIELD_PI;
+        }
+
+        if (data.has(RdsData.FIELD_AF) && data.af != null
+                && !Arrays.equals(data.af, mAf)) {
+            mAf = data.af.clone();
+            changed |= RdsData.FIELD_AF;
+        }
+
+        mFields |= changed;
+        return changed;
+    }
+
+    /**
+     * Create a copy, e.g. for handing a snapshot to another thread
+     *
+     * @return copy of this state
+     */
+    public RdsState copy() {
+        RdsState state = new RdsState();
+        state.set(this);
+        return state;
+    }
+
+    /**
+     * Overwrite this state with the contents of another one
+     *
+     * @param state state to copy from
+     */
+    public void set(RdsState state) {
+        mFrequency = state.mFrequency;
+        mFields = state.mFields;
+        mPsnRaw = state.mPsnRaw;
+        mPsn = state.mPsn;
+        mRtRaw = state.mRtRaw;
+        mRt = state.mRt;
+        mPty = state.mPty;
+        mPi = state.mPi;
+        mAf = state.mAf;
+    }
+
+    /**
+     * Check whether a field has been received
+     *
+     * @param field RdsData.FIELD_* constant
+     * @return presence
+     */
+    public boolean has(int field) {
+        return (mFields & field) != 0;
+    }
+
+    /**
+     * Mask of all fields received so far
+     */
+    public int getFields() {
+        return mFields;
+    }
+
+    public int getFrequency() {
+        return mFrequency;
+    }
+
+    /**
+     * Program service name, trimmed
+     */
+    public String getPsn() {
+        return mPsn;
+    }
+
+    /**
+     * Radio text, trimmed
+     */
+    public String getRt() {
+        return mRt;
+    }
+
+    public int getPty() {
+        return mPty;
+    }
+
+    public int getPi() {
+        return mPi;
+    }
+
+    /**
+     * Alternative frequencies in KHz. The array must not be modified.
+     */
+    public int[] getAf() {
+        return mAf;
+    }
+}
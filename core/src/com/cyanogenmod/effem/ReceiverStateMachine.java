@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+/**
+ * Cached receiver state with explicit transitions
+ *
+ * Requests move the state right away (e.g. to STATE_STARTING or
+ * STATE_STOPPING), the worker thread completes the transition once the
+ * receiver has done it. Reading the state and checking whether a command
+ * is acceptable is a table lookup, without asking the receiver.
+ */
+public class ReceiverStateMachine {
+    // states, the first five have the FmReceiverBackend values
+    public static final int STATE_IDLE     = FmReceiverBackend.STATE_IDLE;
+    public static final int STATE_STARTING = FmReceiverBackend.STATE_STARTING;
+    public static final int STATE_STARTED  = FmReceiverBackend.STATE_STARTED;
+    public static final int STATE_PAUSED   = FmReceiverBackend.STATE_PAUSED;
+    public static final int STATE_SCANNING = FmReceiverBackend.STATE_SCANNING;
+    public static final int STATE_STOPPING = 5;
+
+    // commands
+    public static final int COMMAND_STOP   = 0;
+    public static final int COMMAND_PAUSE  = 1;
+    public static final int COMMAND_RESUME = 2;
+    public static final int COMMAND_TUNE   = 3;
+    public static final int COMMAND_SCAN   = 4;
+
+    private static final int IDLE     = 1 << STATE_IDLE;
+    private static final int STARTING = 1 << STATE_STARTING;
+    private static final int STARTED  = 1 << STATE_STARTED;
+    private static final int PAUSED   = 1 << STATE_PAUSED;
+    private static final int SCANNING = 1 << STATE_SCANNING;
+    private static final int STOPPING = 1 << STATE_STOPPING;
+
+    // states reachable from each state
+    private static final int[] TRANSITIONS = {
+        /* idle */     STARTING,
+        /* starting */ STARTED | IDLE | STOPPING,
+        /* started */  PAUSED | SCANNING | STOPPING,
+        /* paused */   STARTED | STOPPING,
+        /* scanning */ STARTED | PAUSED | STOPPING,
+        /* stopping */ IDLE | STARTING,
+    };
+
+    // states each command is accepted in. Commands are queued behind a
+    // start, so they are accepted while starting.
+    private static final int[] COMMANDS = {
+        /* stop */   STARTING | STARTED | PAUSED | SCANNING,
+        /* pause */  STARTED | SCANNING,
+        /* resume */ PAUSED,
+        /* tune */   STARTING | STARTED | PAUSED | SCANNING,
+        /* scan */   STARTING | STARTED | PAUSED | SCANNING,
+    };
+
+    private static final String[] NAMES = {
+        "idle", "starting", "started", "paused", "scanning", "stopping"
+    };
+
+    /**
+     * State change notifications. Called on the thread that made the
+     * transition, after it has been made.
+     */
+    public interface Listener {
+        /**
+         * @param from previous state
+         * @param to new state
+         */
+        public void onStateChanged(int from, int to);
+    }
+
+    private volatile int mState = STATE_IDLE;
+    private volatile Listener mListener;
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Current state, without locking
+     *
+     * @return STATE_* constant
+     */
+    public int getState() {
+        return mState;
+    }
+
+    /**
+     * Whether the receiver is started: playing, paused or scanning
+     */
+    public boolean isStarted() {
+        return ((STARTED | PAUSED | SCANNING) & (1 << mState)) != 0;
+    }
+
+    /**
+     * Whether a command is acceptable in the current state
+     *
+     * @param command COMMAND_* constant
+     * @return acceptance
+     */
+    public boolean accepts(int command) {
+        return (COMMANDS[command] & (1 << mState)) != 0;
+    }
+
+    /**
+     * Move to a state, if the transition from the current state is legal
+     *
+     * @param to new state
+     * @return whether the state was changed
+     */
+    public boolean moveTo(int to) {
+        int from;
+        synchronized (this) {
+            from = mState;
+            if ((TRANSITIONS[from] & (1 << to)) == 0)
+                return false;
+            mState = to;
+        }
+        notifyListener(from, to);
+        return true;
+    }
+
+    /**
+     * Move to a state, only if the current state is the expected one. A
+     * transition completed by the worker thread uses this, so that it
+     * doesn't override a request made in the meantime.
+     *
+     * @param from expected current state
+     * @param to new state
+     * @return whether the state was changed
+     */
+    public boolean transition(int from, int to) {
+        synchronized (this) {
+            if (mState != from || (TRANSITIONS[from] & (1 << to)) == 0)
+                return false;
+            mState = to;
+        }
+        notifyListener(from, to);
+        return true;
+    }
+
+    /**
+     * Name of a state, for logging
+     *
+     * @param state STATE_* constant
+     * @return name
+     */
+    public static String getName(int state) {
+        return state >= 0 && state < NAMES.length ? NAMES[state] : "unknown";
+    }
+
+    private void notifyListener(int from, int to) {
+        Listener listener = mListener;
+        if (listener != null)
+            listener.onStateChanged(from, to);
+    }
+}
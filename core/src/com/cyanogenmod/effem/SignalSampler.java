@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+/**
+ * Fixed-size history of signal strength samples
+ *
+ * Samples are kept in preallocated primitive arrays used as a ring
+ * buffer; adding a sample never allocates, and the oldest sample is
+ * overwritten once the buffer is full.
+ */
+public class SignalSampler {
+    /**
+     * Statistics over a window of samples
+     */
+    public static class Stats {
+        public int count;
+        public int min;
+        public int max;
+        public int average;
+    }
+
+    /** Match samples of any frequency */
+    public static final int ANY_FREQUENCY = -1;
+
+    private final long[] mTimes;
+    private final int[] mFrequencies;
+    private final int[] mStrengths;
+    // index of the next sample to write
+    private int mNext;
+    private int mSize;
+
+    /**
+     * @param capacity number of samples kept
+     */
+    public SignalSampler(int capacity) {
+        capacity = Math.max(capacity, 1);
+        mTimes = new long[capacity];
+        mFrequencies = new int[capacity];
+        mStrengths = new int[capacity];
+    }
+
+    /**
+     * Number of samples in the buffer
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Add a sample. Samples must be added in time order.
+     *
+     * @param time sample time in ms, from a monotonic clock
+     * @param frequency frequency in KHz
+     * @param strength signal strength
+     */
+    public synchronized void add(long time, int frequency, int strength) {
+        mTimes[mNext] = time;
+        mFrequencies[mNext] = frequency;
+        mStrengths[mNext] = strength;
+        mNext = (mNext + 1) % mTimes.length;
+        if (mSize < mTimes.length)
+            mSize++;
+    }
+
+    /**
+     * Compute statistics of recent samples
+     *
+     * @param since only samples at or after this time are used
+     * @param frequency only samples of this frequency are used, or
+     *        ANY_FREQUENCY
+     * @param out receives the statistics; all fields are 0 if no sample
+     *        matches
+     * @return number of matching samples
+     */
+    public synchronized int getStats(long since, int frequency, Stats out) {
+        int count = 0;
+        int min = 0;
+        int max = 0;
+        long total = 0;
+
+        // newest first, stop at the first sample outside the window
+        int index = mNext;
+        for (int i = 0; i < mSize; i++) {
+            index = (index == 0 ? mTimes.length : index) - 1;
+            if (mTimes[index] < since)
+                break;
+            if (frequency != ANY_FREQUENCY && mFrequencies[index] != frequency)
+                continue;
+
+            int strength = mStrengths[index];
+            if (count == 0 || strength < min)
+                min = strength;
+            if (count == 0 || strength > max)
+                max = strength;
+            total += strength;
+            count++;
+        }
+
+        out.count = count;
+        out.min = min;
+        out.max = max;
+        out.average = count > 0 ? (int) (total / count) : 0;
+        return count;
+    }
+
+    /**
+     * Remove all samples
+     */
+    public synchronized void clear() {
+        mNext = 0;
+        mSize = 0;
+    }
+}
@@ -0,0 +1,560 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deterministic in-process tuner for testing and benchmarking
+ *
+ * Stations are either set explicitly or generated from a seed. Seeks take
+ * a configurable time per channel swept and RDS groups are emitted at a
+ * configurable interval. With a seek latency of zero, seeks and scans
+ * complete synchronously on the calling thread.
+ */
+public class SimulatedReceiverBackend implements FmReceiverBackend {
+    // defaults roughly match real hardware
+    private static final int DEFAULT_STATION_COUNT = 20;
+    private static final int DEFAULT_SEEK_LATENCY = 5;
+    private static final int DEFAULT_RDS_INTERVAL = 88;
+
+    /**
+     * A simulated transmitter
+     */
+    public static class Station {
+        public final int frequency;
+        public final int signalStrength;
+        public final int pi;
+        public final int pty;
+        public final String psn;
+        public final String rt;
+
+        public Station(int frequency, int signalStrength, int pi, int pty,
+                String psn, String rt) {
+            this.frequency = frequency;
+            this.signalStrength = signalStrength;
+            this.pi = pi;
+            this.pty = pty;
+            this.psn = psn;
+            this.rt = rt;
+        }
+    }
+
+    private Station[] mStations;
+    // whether mStations was generated for the band at start
+    private boolean mStationsGenerated;
+    private long mSeed = 1;
+    private int mStationCount = DEFAULT_STATION_COUNT;
+    private int mStartLatency = 0;
+    private int mSeekLatency = DEFAULT_SEEK_LATENCY;
+    private int mRdsInterval = DEFAULT_RDS_INTERVAL;
+
+    private BandPlan mBand;
+    private int mState = STATE_IDLE;
+    private int mFrequency;
+    private int mRdsGroup;
+    private volatile Listener mListener;
+
+    private ScheduledExecutorService mExecutor;
+    private ScheduledFuture<?> mScanTask;
+    private ScheduledFuture<?> mRdsTask;
+    private int mScanDirection;
+    private long mScanStartTime;
+    private boolean mFullScan;
+
+    private final Runnable mRdsAction = new Runnable() {
+        public void run() {
+            emitRdsGroup();
+        }
+    };
+
+    /**
+     * Generate a random, but reproducible station layout
+     *
+     * @param band band to place stations in
+     * @param count number of stations
+     * @param seed random seed
+     * @return stations, sorted by frequency
+     */
+    public static Station[] createStationLayout(BandPlan band, int count, long seed) {
+        Random random = new Random(seed);
+        int channels = band.getChannelCount();
+        count = Math.min(count, channels);
+
+        // pick distinct channels
+        boolean[] used = new boolean[channels];
+        Station[] stations = new Station[count];
+        for (int i = 0; i < count; i++) {
+            int channel;
+            do {
+                channel = random.nextInt(channels);
+            } while (used[channel]);
+            used[channel] = true;
+
+            String psn = "SIM " + (1000 + i);
+            stations[i] = new Station(band.getFrequency(channel),
+                    20 + random.nextInt(80), 0xd000 + i, 1 + random.nextInt(31),
+                    psn, "Simulated station " + psn);
+        }
+        sortStations(stations);
+        return stations;
+    }
+
+    private static void sortStations(Station[] stations) {
+        Arrays.sort(stations, new Comparator<Station>() {
+            public int compare(Station l, Station r) {
+                return l.frequency - r.frequency;
+            }
+        });
+    }
+
+    /**
+     * Set station layout explicitly
+     *
+     * @param stations stations, or null to generate a layout on start
+     */
+    public synchronized void setStations(Station[] stations) {
+        if (stations == null) {
+            mStations = null;
+            return;
+        }
+        mStations = stations.clone();
+        sortStations(mStations);
+        mStationsGenerated = false;
+    }
+
+    /**
+     * Configure generated station layout
+     *
+     * @param count number of stations
+     * @param seed random seed
+     */
+    public synchronized void setStationLayout(int count, long seed) {
+        mStationCount = count;
+        mSeed = seed;
+        mStations = null;
+    }
+
+    /**
+     * Set time a blocking start takes
+     *
+     * @param latency latency in milliseconds
+     */
+    public synchronized void setStartLatency(int latency) {
+        mStartLatency = latency;
+    }
+
+    /**
+     * Set time a seek takes per channel swept
+     *
+     * @param latency latency in milliseconds, 0 for synchronous seeks
+     */
+    public synchronized void setSeekLatency(int latency) {
+        mSeekLatency = latency;
+    }
+
+    /**
+     * Set interval between RDS groups on stations
+     *
+     * @param interval interval in milliseconds, 0 disables automatic emission
+     */
+    public synchronized void setRdsInterval(int interval) {
+        mRdsInterval = interval;
+    }
+
+    public BandPlan getBandPlan(int band) {
+        return BandPlan.forBand(band);
+    }
+
+    public void start(BandPlan band) throws IOException {
+        int latency;
+        synchronized (this) {
+            if (mState != STATE_IDLE)
+                throw new IllegalStateException("receiver not idle");
+            mState = STATE_STARTING;
+            latency = mStartLatency;
+        }
+
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this) {
+            mBand = band;
+            if (mStations == null) {
+                mStations = createStationLayout(band, mStationCount, mSeed);
+                mStationsGenerated = true;
+            }
+            mFrequency = band.getDefaultFrequency();
+            mRdsGroup = 0;
+            mExecutor = Executors.newSingleThreadScheduledExecutor();
+            if (mRdsInterval > 0) {
+                mRdsTask = mExecutor.scheduleAtFixedRate(mRdsAction, mRdsInterval,
+                        mRdsInterval, TimeUnit.MILLISECONDS);
+            }
+            mState = STATE_STARTED;
+        }
+    }
+
+    public synchronized boolean setBand(BandPlan band) throws IOException {
+        if (mState != STATE_STARTED && mState != STATE_PAUSED)
+            throw new IllegalStateException("receiver not started");
+
+        mBand = band;
+        // a generated layout only covers the band it was generated for
+        if (mStationsGenerated)
+            mStations = createStationLayout(band, mStationCount, mSeed);
+        mFrequency = band.getDefaultFrequency();
+        mRdsGroup = 0;
+        return true;
+    }
+
+    public synchronized void reset() throws IOException {
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+            mExecutor = null;
+        }
+        mScanTask = null;
+        mRdsTask = null;
+        mState = STATE_IDLE;
+    }
+
+    public synchronized void pause() throws IOException {
+        if (mState == STATE_PAUSED)
+            return;
+        if (mState != STATE_STARTED)
+            throw new IllegalStateException("receiver not started");
+        mState = STATE_PAUSED;
+    }
+
+    public synchronized void resume() throws IOException {
+        if (mState == STATE_STARTED)
+            return;
+        if (mState != STATE_PAUSED)
+            throw new IllegalStateException("receiver not paused");
+        mState = STATE_STARTED;
+    }
+
+    public synchronized int getState() {
+        return mState;
+    }
+
+    public synchronized int getFrequency() throws IOException {
+        checkStarted();
+        return mFrequency;
+    }
+
+    public synchronized void setFrequency(int frequency) throws IOException {
+        checkStarted();
+        if (!mBand.isFrequencyValid(frequency))
+            throw new IllegalArgumentException("invalid frequency " + frequency);
+        mFrequency = frequency;
+        mRdsGroup = 0;
+    }
+
+    public void scanUp() {
+        startSeek(SCAN_UP);
+    }
+
+    public void scanDown() {
+        startSeek(SCAN_DOWN);
+    }
+
+    private void startSeek(final int direction) {
+        final int target;
+        final long latency;
+        synchronized (this) {
+            checkStarted();
+            target = findStation(mFrequency, direction);
+            int channels = Math.abs(mBand.getChannel(target) - mBand.getChannel(mFrequency));
+            if (channels == 0)
+                channels = mBand.getChannelCount();
+            latency = (long) channels * mSeekLatency;
+
+            if (latency > 0) {
+                mState = STATE_SCANNING;
+                mFullScan = false;
+                mScanDirection = direction;
+                mScanTask = mExecutor.schedule(new Runnable() {
+                    public void run() {
+                        finishSeek(target, direction);
+                    }
+                }, latency, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        finishSeek(target, direction);
+    }
+
+    private void finishSeek(int target, int direction) {
+        int strength;
+        synchronized (this) {
+            mScanTask = null;
+            mFrequency = target;
+            mRdsGroup = 0;
+            mState = STATE_STARTED;
+            strength = strengthAt(target);
+        }
+
+        Listener l = mListener;
+        if (l != null)
+            l.onScan(target, strength, direction, false);
+    }
+
+    /**
+     * The sweep stops at every station on its way up the band and reports
+     * it via Listener.onScan, then reports all stations via
+     * Listener.onFullScan.
+     */
+    public void startFullScan() {
+        synchronized (this) {
+            checkStarted();
+            mState = STATE_SCANNING;
+            mFullScan = true;
+            mScanStartTime = System.nanoTime();
+            if (mSeekLatency > 0) {
+                scheduleFullScanStep(0);
+                return;
+            }
+        }
+        finishFullScan(Integer.MAX_VALUE, false);
+    }
+
+    /**
+     * Schedule the arrival of the sweep at a station, or at the end of
+     * the band. Must be called with the lock held.
+     *
+     * @param station index in mStations
+     */
+    private void scheduleFullScanStep(final int station) {
+        int channel = station < mStations.length
+                ? mBand.getChannel(mStations[station].frequency) : mBand.getChannelCount();
+        long delay = (long) channel * mSeekLatency
+                - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mScanStartTime);
+        mScanTask = mExecutor.schedule(new Runnable() {
+            public void run() {
+                fullScanStep(station);
+            }
+        }, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+    }
+
+    private void fullScanStep(int station) {
+        int frequency;
+        int strength;
+        synchronized (this) {
+            // stopped in the meantime
+            if (!mFullScan || mState != STATE_SCANNING)
+                return;
+            if (station < mStations.length) {
+                frequency = mStations[station].frequency;
+                strength = mStations[station].signalStrength;
+                mFrequency = frequency;
+                scheduleFullScanStep(station + 1);
+            } else {
+                frequency = -1;
+                strength = 0;
+            }
+        }
+
+        if (frequency < 0) {
+            finishFullScan(Integer.MAX_VALUE, false);
+            return;
+        }
+        Listener l = mListener;
+        if (l != null)
+            l.onScan(frequency, strength, SCAN_UP, false);
+    }
+
+    /**
+     * Report stations of a full scan
+     *
+     * @param limit highest frequency reached by the sweep
+     * @param aborted whether the scan was stopped
+     */
+    private void finishFullScan(int limit, boolean aborted) {
+        int[] frequencies;
+        int[] strengths;
+        synchronized (this) {
+            // the end of the sweep and a stop may race, report only once
+            if (!mFullScan || mState != STATE_SCANNING)
+                return;
+            mScanTask = null;
+            mFullScan = false;
+            mState = STATE_STARTED;
+
+            int count = 0;
+            while (count < mStations.length && mStations[count].frequency <= limit)
+                count++;
+            frequencies = new int[count];
+            strengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                frequencies[i] = mStations[i].frequency;
+                strengths[i] = mStations[i].signalStrength;
+            }
+        }
+
+        Listener l = mListener;
+        if (l != null)
+            l.onFullScan(frequencies, strengths, aborted);
+    }
+
+    public void stopScan() {
+        boolean fullScan;
+        int direction;
+        int limit;
+        int frequency;
+        synchronized (this) {
+            if (mScanTask == null)
+                return;
+            // a step of a full scan may be running, it checks the state
+            if (!mScanTask.cancel(false) && !mFullScan)
+                return;
+            fullScan = mFullScan;
+            direction = mScanDirection;
+            frequency = mFrequency;
+
+            // how far did the sweep get?
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mScanStartTime);
+            int channels = (int) Math.min(elapsed / Math.max(mSeekLatency, 1),
+                    mBand.getChannelCount() - 1);
+            limit = mBand.getFrequency(channels);
+        }
+
+        if (fullScan) {
+            finishFullScan(limit, true);
+        } else {
+            synchronized (this) {
+                mScanTask = null;
+                mState = STATE_STARTED;
+            }
+            Listener l = mListener;
+            if (l != null)
+                l.onScan(frequency, strengthAt(frequency), direction, true);
+        }
+    }
+
+    public synchronized int getSignalStrength() throws IOException {
+        checkStarted();
+        return strengthAt(mFrequency);
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Emit the next RDS group of the current station. This is called
+     * periodically while started, but can also be called directly to
+     * drive RDS processing deterministically.
+     *
+     * @return whether a group was emitted
+     */
+    public boolean emitRdsGroup() {
+        RdsData data;
+        int frequency;
+        synchronized (this) {
+            if (mState != STATE_STARTED)
+                return false;
+            Station station = stationAt(mFrequency);
+            if (station == null)
+                return false;
+
+            // alternate between basic tuning info and radio text groups
+            data = new RdsData();
+            data.pi = station.pi;
+            data.fields = RdsData.FIELD_PI;
+            if ((mRdsGroup++ & 1) == 0) {
+                data.psn = station.psn;
+                data.pty = station.pty;
+                data.fields |= RdsData.FIELD_PSN | RdsData.FIELD_PTY;
+            } else {
+                data.rt = station.rt;
+                data.fields |= RdsData.FIELD_RT;
+            }
+            frequency = mFrequency;
+        }
+
+        Listener l = mListener;
+        if (l != null)
+            l.onRdsDataFound(data, frequency);
+        return true;
+    }
+
+    private void checkStarted() {
+        if (mState != STATE_STARTED && mState != STATE_PAUSED)
+            throw new IllegalStateException("receiver not started");
+    }
+
+    private Station stationAt(int frequency) {
+        int lo = 0;
+        int hi = mStations.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int f = mStations[mid].frequency;
+            if (f < frequency)
+                lo = mid + 1;
+            else if (f > frequency)
+                hi = mid - 1;
+            else
+                return mStations[mid];
+        }
+        return null;
+    }
+
+    private int strengthAt(int frequency) {
+        Station station = stationAt(frequency);
+        return station != null ? station.signalStrength : 0;
+    }
+
+    /**
+     * Find next station in given direction, wrapping around band edges
+     *
+     * @param frequency start frequency in KHz
+     * @param direction SCAN_UP or SCAN_DOWN
+     * @return frequency of the next station, or the start frequency if
+     *         there are no other stations
+     */
+    private int findStation(int frequency, int direction) {
+        if (mStations.length == 0)
+            return frequency;
+
+        if (direction == SCAN_UP) {
+            for (Station s : mStations) {
+                if (s.frequency > frequency)
+                    return s.frequency;
+            }
+            return mStations[0].frequency;
+        } else {
+            for (int i = mStations.length - 1; i >= 0; i--) {
+                if (mStations[i].frequency < frequency)
+                    return mStations[i].frequency;
+            }
+            return mStations[mStations.length - 1].frequency;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import java.util.Arrays;
+
+/**
+ * Signal strength of every channel of a band
+ */
+public class Spectrum {
+    /** Strength of channels that haven't been measured */
+    public static final int UNMEASURED = -1;
+
+    private BandPlan mBand;
+    private int[] mStrengths = new int[0];
+    private int mChannels;
+    private int mMeasured;
+
+    /**
+     * Start over with all channels of a band unmeasured. Storage is
+     * reused if it is large enough.
+     *
+     * @param band band plan
+     */
+    public void reset(BandPlan band) {
+        mBand = band;
+        mChannels = band.getChannelCount();
+        if (mStrengths.length < mChannels)
+            mStrengths = new int[mChannels];
+        Arrays.fill(mStrengths, 0, mChannels, UNMEASURED);
+        mMeasured = 0;
+    }
+
+    /**
+     * Band plan, or null if the spectrum was never reset
+     */
+    public BandPlan getBandPlan() {
+        return mBand;
+    }
+
+    public int getChannelCount() {
+        return mChannels;
+    }
+
+    /**
+     * Number of channels measured so far
+     */
+    public int getMeasuredCount() {
+        return mMeasured;
+    }
+
+    /**
+     * Signal strength of a channel
+     *
+     * @param channel channel in 0..getChannelCount()-1
+     * @return strength, or UNMEASURED
+     */
+    public int getStrength(int channel) {
+        return mStrengths[channel];
+    }
+
+    /**
+     * @param channel channel in 0..getChannelCount()-1
+     * @return frequency in KHz
+     */
+    public int getFrequency(int channel) {
+        return mBand.getFrequency(channel);
+    }
+
+    /**
+     * Highest strength of all measured channels
+     *
+     * @return strength, or UNMEASURED if no channel was measured
+     */
+    public int getMaxStrength() {
+        int max = UNMEASURED;
+        for (int i = 0; i < mChannels; i++)
+            max = Math.max(max, mStrengths[i]);
+        return max;
+    }
+
+    /**
+     * Set signal strength of a channel
+     *
+     * @param channel channel in 0..getChannelCount()-1
+     * @param strength signal strength, at least 0
+     */
+    public void set(int channel, int strength) {
+        if (mStrengths[channel] == UNMEASURED)
+            mMeasured++;
+        mStrengths[channel] = Math.max(strength, 0);
+    }
+
+    /**
+     * Set signal strength of a frequency; frequencies that are not on a
+     * channel of the band are ignored
+     *
+     * @param frequency frequency in KHz
+     * @param strength signal strength, at least 0
+     */
+    public void put(int frequency, int strength) {
+        int channel = mBand != null ? mBand.getChannel(frequency) : -1;
+        if (channel >= 0)
+            set(channel, strength);
+    }
+
+    /**
+     * Overwrite this spectrum with the contents of another one. Storage
+     * is reused if it is large enough.
+     *
+     * @param spectrum spectrum to copy from
+     */
+    public void set(Spectrum spectrum) {
+        mBand = spectrum.mBand;
+        mChannels = spectrum.mChannels;
+        if (mStrengths.length < mChannels)
+            mStrengths = new int[mChannels];
+        System.arraycopy(spectrum.mStrengths, 0, mStrengths, 0, mChannels);
+        mMeasured = spectrum.mMeasured;
+    }
+}
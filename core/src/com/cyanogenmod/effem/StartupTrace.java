@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+/**
+ * Timestamps of the stages of a start, relative to its beginning
+ *
+ * Stages can be marked from any thread, in any order; they are reported
+ * sorted by time. Times are in ms and must all come from the same
+ * clock.
+ */
+public class StartupTrace {
+    private static final int MAX_STAGES = 16;
+
+    private final String[] mStages = new String[MAX_STAGES];
+    private final long[] mTimes = new long[MAX_STAGES];
+    private int mCount;
+    private long mStart;
+    private boolean mActive;
+
+    /**
+     * Start a new trace, dropping the previous one
+     *
+     * @param time start time in ms
+     */
+    public synchronized void begin(long time) {
+        mStart = time;
+        mCount = 0;
+        mActive = true;
+    }
+
+    /**
+     * Whether a trace has been started and not finished yet
+     */
+    public synchronized boolean isActive() {
+        return mActive;
+    }
+
+    /**
+     * Record a stage. Ignored if no trace is active.
+     *
+     * @param stage stage name
+     * @param time time in ms
+     */
+    public synchronized void mark(String stage, long time) {
+        if (!mActive || mCount == MAX_STAGES)
+            return;
+
+        // keep stages sorted by time
+        int index = mCount;
+        while (index > 0 && mTimes[index - 1] > time) {
+            mStages[index] = mStages[index - 1];
+            mTimes[index] = mTimes[index - 1];
+            index--;
+        }
+        mStages[index] = stage;
+        mTimes[index] = time;
+        mCount++;
+    }
+
+    /**
+     * Record the final stage and end the trace
+     *
+     * @param stage stage name
+     * @param time time in ms
+     * @return time since the start in ms, or -1 if no trace was active
+     */
+    public synchronized long finish(String stage, long time) {
+        if (!mActive)
+            return -1;
+        mark(stage, time);
+        mActive = false;
+        return time - mStart;
+    }
+
+    /**
+     * Time of a stage
+     *
+     * @param stage stage name
+     * @return time since the start in ms, or -1 if the stage wasn't marked
+     */
+    public synchronized long getElapsed(String stage) {
+        for (int i = 0; i < mCount; i++) {
+            if (mStages[i].equals(stage))
+                return mTimes[i] - mStart;
+        }
+        return -1;
+    }
+
+    /**
+     * Stages of the last trace, e.g. "service created +40 ms, audio +310 ms"
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < mCount; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(mStages[i]).append(" +").append(mTimes[i] - mStart).append(" ms");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,577 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Crash-safe persistence of favorites and receiver settings
+ *
+ * Changes are appended to a journal as small checksummed records. Writes
+ * are coalesced and done on a background thread: events posted within
+ * WRITE_DELAY end up in a single append, and of several tune events only
+ * the latest is written. Once the journal grows beyond a threshold, the
+ * current state is compacted into a snapshot file and the journal starts
+ * over.
+ *
+ * On startup, load() replays the snapshot and then the journal. A record
+ * torn by a crash fails its checksum; replay stops there and the journal
+ * is truncated to the last good record. The snapshot is written in one
+ * piece, a damaged record in it is skipped. A failed append is cut off the
+ * same way right away, and the next write compacts instead of appending,
+ * so that later records never end up behind a damaged one.
+ */
+public class StationJournal {
+    private static final String SNAPSHOT_FILE = "stations.snapshot";
+    private static final String JOURNAL_FILE = "stations.journal";
+
+    private static final int MAGIC = 0x45464a4e; // "EFJN"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    // largest record written; names are limited to fit
+    private static final int MAX_RECORD_SIZE = 4096;
+
+    // record types
+    private static final int RECORD_ADD      = 1;
+    private static final int RECORD_REMOVE   = 2;
+    private static final int RECORD_TUNE     = 3;
+    private static final int RECORD_SETTINGS = 4;
+
+    // delay before pending records are written, in ms
+    private static final long WRITE_DELAY = 1000;
+    // journal records before compaction
+    private static final int COMPACT_THRESHOLD = 512;
+
+    /**
+     * Persisted state
+     */
+    public static class State {
+        public final FavoriteStore favorites = new FavoriteStore();
+        public int band = -1;
+        public int frequency = 0;
+        public int output = 0;
+    }
+
+    /**
+     * Receives the result of loadAsync()
+     */
+    public interface LoadCallback {
+        /**
+         * Called on the journal's background thread
+         *
+         * @param state recovered state, or null if nothing has been
+         *              persisted yet
+         */
+        public void onLoaded(State state);
+    }
+
+    /**
+     * Receives I/O errors of the background thread
+     */
+    public interface ErrorListener {
+        /**
+         * Called on the journal's background thread
+         *
+         * @param message what failed
+         * @param e cause
+         */
+        public void onError(String message, IOException e);
+    }
+
+    private static class Record {
+        final int type;
+        final int value;
+        final int value2;
+        final String name;
+
+        Record(int type, int value, int value2, String name) {
+            this.type = type;
+            this.value = value;
+            this.value2 = value2;
+            this.name = MenuTuple.limitName(name);
+        }
+    }
+
+    private final File mSnapshotFile;
+    private final File mJournalFile;
+    private final ScheduledExecutorService mExecutor;
+
+    // pending records, guarded by this
+    private final List<Record> mPending = new ArrayList<Record>();
+    private int mPendingTune = -1;
+    private boolean mScheduled;
+    private boolean mClosed;
+
+    // state as persisted, only touched on the executor thread after load()
+    private State mState = new State();
+    private boolean mLoaded;
+    private int mJournalRecords;
+    // the journal may end in a damaged record, don't append to it
+    private boolean mCompactPending;
+    private volatile ErrorListener mErrorListener;
+    private final ByteArrayOutputStream mBuffer = new ByteArrayOutputStream();
+    private final CRC32 mCrc = new CRC32();
+
+    private final Runnable mWriteAction = new Runnable() {
+        public void run() {
+            write();
+        }
+    };
+
+    /**
+     * @param dir directory for snapshot and journal files
+     */
+    public StationJournal(File dir) {
+        mSnapshotFile = new File(dir, SNAPSHOT_FILE);
+        mJournalFile = new File(dir, JOURNAL_FILE);
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    public void setErrorListener(ErrorListener listener) {
+        mErrorListener = listener;
+    }
+
+    /**
+     * Recover persisted state. Must be called once, before any events are
+     * posted, and not together with loadAsync().
+     *
+     * @return recovered state, or null if nothing has been persisted yet
+     */
+    public State load() {
+        if (!mSnapshotFile.exists() && !mJournalFile.exists())
+            return null;
+
+        State state = new State();
+        replay(mSnapshotFile, state, false);
+        mJournalRecords = replay(mJournalFile, state, true);
+
+        // the caller owns the returned favorites, keep a separate copy
+        mState = new State();
+        copy(state, mState);
+        mLoaded = true;
+        return state;
+    }
+
+    /**
+     * Recover persisted state on the background thread. Events can be
+     * posted right away, they are written after loading.
+     *
+     * The journal is meant to live as long as the process, so this may be
+     * called again, e.g. by a new activity instance. Files are only read
+     * the first time, later calls get the current state, including events
+     * that are still pending.
+     *
+     * @param callback result receiver
+     */
+    public void loadAsync(final LoadCallback callback) {
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                if (!mLoaded) {
+                    callback.onLoaded(load());
+                    return;
+                }
+                write();
+                State state = new State();
+                copy(mState, state);
+                callback.onLoaded(state);
+            }
+        });
+    }
+
+    /**
+     * Replace all persisted state, e.g. after importing from elsewhere.
+     * The state is written as a new snapshot.
+     *
+     * @param state new state, copied
+     */
+    public void reset(State state) {
+        final State copy = new State();
+        copy(state, copy);
+        synchronized (this) {
+            if (mClosed)
+                return;
+            mPending.clear();
+            mPendingTune = -1;
+        }
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                mState = copy;
+                mLoaded = true;
+                compact();
+            }
+        });
+    }
+
+    public void favoriteAdded(MenuTuple entry) {
+        post(new Record(RECORD_ADD, entry.frequency, 0, entry.name));
+    }
+
+    public void favoriteRemoved(int frequency) {
+        post(new Record(RECORD_REMOVE, frequency, 0, null));
+    }
+
+    public void tuned(int frequency) {
+        post(new Record(RECORD_TUNE, frequency, 0, null));
+    }
+
+    /**
+     * @param band BandPlan.BAND_* constant
+     * @param output audio output
+     */
+    public void settingsChanged(int band, int output) {
+        post(new Record(RECORD_SETTINGS, band, output, null));
+    }
+
+    /**
+     * Write pending records now instead of after WRITE_DELAY. Returns
+     * immediately.
+     */
+    public void flush() {
+        synchronized (this) {
+            if (mClosed || mPending.isEmpty())
+                return;
+            mScheduled = true;
+        }
+        mExecutor.execute(mWriteAction);
+    }
+
+    /**
+     * Write pending records and stop the background thread. Returns
+     * immediately, later events are ignored.
+     */
+    public void close() {
+        flush();
+        synchronized (this) {
+            mClosed = true;
+        }
+        mExecutor.shutdown();
+    }
+
+    /**
+     * Wait until the background thread has finished after close()
+     *
+     * @param timeout maximum time to wait
+     * @param unit unit of timeout
+     * @return whether the thread has finished
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return mExecutor.awaitTermination(timeout, unit);
+    }
+
+    private synchronized void post(Record record) {
+        if (mClosed)
+            return;
+
+        // only the latest frequency matters
+        if (record.type == RECORD_TUNE && mPendingTune >= 0) {
+            mPending.set(mPendingTune, record);
+        } else {
+            if (record.type == RECORD_TUNE)
+                mPendingTune = mPending.size();
+            mPending.add(record);
+        }
+
+        if (!mScheduled) {
+            mScheduled = true;
+            mExecutor.schedule(mWriteAction, WRITE_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Append pending records to the journal, runs on the executor thread
+     */
+    private void write() {
+        Record[] records;
+        synchronized (this) {
+            mScheduled = false;
+            if (mPending.isEmpty())
+                return;
+            records = mPending.toArray(new Record[mPending.size()]);
+            mPending.clear();
+            mPendingTune = -1;
+        }
+
+        for (Record record : records)
+            apply(mState, record);
+
+        if (mCompactPending || mJournalRecords + records.length > COMPACT_THRESHOLD) {
+            compact();
+            return;
+        }
+
+        long length = mJournalFile.length();
+        try {
+            mBuffer.reset();
+            DataOutputStream out = new DataOutputStream(mBuffer);
+            if (!mJournalFile.exists() || length < HEADER_SIZE)
+                writeHeader(out);
+            for (Record record : records)
+                writeRecord(out, record);
+            append(mJournalFile, true);
+            mJournalRecords += records.length;
+        } catch (IOException e) {
+            reportError("append failed", e);
+            // cut off what may have been written, and put the records,
+            // which are part of mState, into a snapshot instead
+            truncate(mJournalFile, length);
+            mCompactPending = true;
+            compact();
+        }
+    }
+
+    /**
+     * Write current state as snapshot and start a new journal, runs on
+     * the executor thread
+     */
+    private void compact() {
+        File tmp = new File(mSnapshotFile.getPath() + ".tmp");
+        try {
+            mBuffer.reset();
+            DataOutputStream out = new DataOutputStream(mBuffer);
+            writeHeader(out);
+            writeRecord(out, new Record(RECORD_SETTINGS, mState.band, mState.output, null));
+            writeRecord(out, new Record(RECORD_TUNE, mState.frequency, 0, null));
+            for (int i = 0; i < mState.favorites.size(); i++) {
+                MenuTuple entry = mState.favorites.get(i);
+                writeRecord(out, new Record(RECORD_ADD, entry.frequency, 0, entry.name));
+            }
+            append(tmp, false);
+            if (!tmp.renameTo(mSnapshotFile))
+                throw new IOException("rename failed");
+
+            // everything in the journal is part of the snapshot now. If
+            // deleting doesn't happen, replaying the old journal on top of
+            // the snapshot still ends in the same state.
+            if (mJournalFile.exists() && !mJournalFile.delete())
+                throw new IOException("can't delete journal");
+            mJournalRecords = 0;
+            mCompactPending = false;
+        } catch (IOException e) {
+            reportError("compaction failed", e);
+            tmp.delete();
+        }
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    private void writeRecord(DataOutputStream out, Record record) throws IOException {
+        // payload is written first to know its length and checksum
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(32);
+        DataOutputStream data = new DataOutputStream(payload);
+        data.writeByte(record.type);
+        switch (record.type) {
+        case RECORD_ADD:
+            data.writeInt(record.value);
+            data.writeUTF(record.name != null ? record.name : "");
+            break;
+        case RECORD_SETTINGS:
+            data.writeInt(record.value);
+            data.writeInt(record.value2);
+            break;
+        default:
+            data.writeInt(record.value);
+            break;
+        }
+
+        // replay must be able to read back whatever is written
+        byte[] bytes = payload.toByteArray();
+        if (bytes.length > MAX_RECORD_SIZE)
+            throw new IOException("record too large: " + bytes.length);
+        mCrc.reset();
+        mCrc.update(bytes, 0, bytes.length);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.writeInt((int) mCrc.getValue());
+    }
+
+    /**
+     * Write mBuffer to a file and sync it to disk
+     */
+    private void append(File file, boolean append) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, append);
+        try {
+            mBuffer.writeTo(out);
+            out.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Apply records of a file to a state
+     *
+     * @param file snapshot or journal
+     * @param state state to modify
+     * @param truncate whether to cut off a damaged tail. Otherwise the
+     *        file is a snapshot, where damaged records are skipped.
+     * @return number of valid records
+     */
+    private int replay(File file, State state, boolean truncate) {
+        if (!file.exists())
+            return 0;
+
+        int count = 0;
+        long valid = 0;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("bad header");
+            valid = HEADER_SIZE;
+
+            CRC32 crc = new CRC32();
+            byte[] bytes = new byte[MAX_RECORD_SIZE];
+            long fileLength = file.length();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                // records written before names were limited may be larger
+                // than MAX_RECORD_SIZE, but never larger than the file
+                if (length <= 0 || length > fileLength - valid - 8)
+                    throw new IOException("bad record length " + length);
+                if (length > bytes.length)
+                    bytes = new byte[length];
+                in.readFully(bytes, 0, length);
+                int checksum = in.readInt();
+                crc.reset();
+                crc.update(bytes, 0, length);
+                try {
+                    if (checksum != (int) crc.getValue())
+                        throw new IOException("bad checksum");
+                    apply(state, readRecord(bytes, length));
+                    count++;
+                } catch (IOException e) {
+                    // a damaged snapshot record doesn't affect the others
+                    if (truncate)
+                        throw e;
+                    reportError(file.getName() + ": skipped record after " + count
+                            + " records", e);
+                }
+                valid += 4 + length + 4;
+            }
+        } catch (IOException e) {
+            reportError(file.getName() + " damaged after " + count + " records", e);
+            if (truncate)
+                truncate(file, valid);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+        return count;
+    }
+
+    private Record readRecord(byte[] bytes, int length) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes, 0, length));
+        int type = data.readUnsignedByte();
+        switch (type) {
+        case RECORD_ADD:
+            int frequency = data.readInt();
+            return new Record(type, frequency, 0, data.readUTF());
+        case RECORD_SETTINGS:
+            int band = data.readInt();
+            return new Record(type, band, data.readInt(), null);
+        case RECORD_REMOVE:
+        case RECORD_TUNE:
+            return new Record(type, data.readInt(), 0, null);
+        default:
+            throw new IOException("unknown record type " + type);
+        }
+    }
+
+    private static void apply(State state, Record record) {
+        switch (record.type) {
+        case RECORD_ADD:
+            state.favorites.put(new MenuTuple(record.value, record.name));
+            break;
+        case RECORD_REMOVE:
+            state.favorites.remove(record.value);
+            break;
+        case RECORD_TUNE:
+            state.frequency = record.value;
+            break;
+        case RECORD_SETTINGS:
+            state.band = record.value;
+            state.output = record.value2;
+            break;
+        }
+    }
+
+    private static void copy(State from, State to) {
+        to.favorites.clear();
+        for (int i = 0; i < from.favorites.size(); i++)
+            to.favorites.put(from.favorites.get(i));
+        to.band = from.band;
+        to.frequency = from.frequency;
+        to.output = from.output;
+    }
+
+    private void reportError(String message, IOException e) {
+        ErrorListener listener = mErrorListener;
+        if (listener != null)
+            listener.onError(message, e);
+    }
+
+    private void truncate(File file, long length) {
+        RandomAccessFile raf = null;
+        try {
+            if (length < HEADER_SIZE) {
+                // not even the header is usable
+                file.delete();
+                return;
+            }
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(length);
+        } catch (IOException e) {
+            reportError("truncate failed", e);
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+}
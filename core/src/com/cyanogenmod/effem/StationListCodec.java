@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the station list in the JSON format used by the
+ * "stations" preference:
+ *
+ * {"stations":[{"frequency":87500,"name":"Station"}, ...]}
+ *
+ * This doesn't depend on org.json, so it also works on a plain JVM.
+ */
+public class StationListCodec {
+    private final Reader mReader;
+    private int mPeek = -2;
+
+    private StationListCodec(Reader reader) {
+        mReader = reader;
+    }
+
+    /**
+     * Encode station list
+     *
+     * @param stations stations
+     * @return JSON string
+     */
+    public static String encode(List<MenuTuple> stations) {
+        StringBuilder sb = new StringBuilder(32 + stations.size() * 48);
+        sb.append("{\"stations\":[");
+        for (int i = 0; i < stations.size(); i++) {
+            MenuTuple mt = stations.get(i);
+            if (i > 0)
+                sb.append(',');
+            sb.append("{\"frequency\":").append(mt.frequency).append(",\"name\":");
+            appendString(sb, mt.name);
+            sb.append('}');
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    /**
+     * Decode station list
+     *
+     * @param json JSON string
+     * @return stations
+     * @throws IOException on malformed input
+     */
+    public static List<MenuTuple> decode(String json) throws IOException {
+        return decode(new StringReader(json));
+    }
+
+    /**
+     * Decode station list
+     *
+     * @param reader reader supplying JSON text
+     * @return stations
+     * @throws IOException on read error or malformed input
+     */
+    public static List<MenuTuple> decode(Reader reader) throws IOException {
+        List<MenuTuple> stations = new ArrayList<MenuTuple>();
+        new StationListCodec(reader).readRoot(stations);
+        return stations;
+    }
+
+    private static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append("\\u00");
+                        sb.append(Character.forDigit(c >> 4, 16));
+                        sb.append(Character.forDigit(c & 0xf, 16));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private void readRoot(List<MenuTuple> stations) throws IOException {
+        expect('{');
+        if (peekToken() == '}') {
+            next();
+            return;
+        }
+        do {
+            String key = readString();
+            expect(':');
+            if (key.equals("stations"))
+                readStations(stations);
+            else
+                skipValue();
+        } while (nextSeparator('}'));
+    }
+
+    private void readStations(List<MenuTuple> stations) throws IOException {
+        expect('[');
+        if (peekToken() == ']') {
+            next();
+            return;
+        }
+        do {
+            stations.add(readStation());
+        } while (nextSeparator(']'));
+    }
+
+    private MenuTuple readStation() throws IOException {
+        int frequency = 0;
+        String name = null;
+        boolean hasFrequency = false;
+
+        expect('{');
+        if (peekToken() != '}') {
+            do {
+                String key = readString();
+                expect(':');
+                if (key.equals("frequency")) {
+                    frequency = readInt();
+                    hasFrequency = true;
+                } else if (key.equals("name")) {
+                    name = readString();
+                } else {
+                    skipValue();
+                }
+            } while (nextSeparator('}'));
+        } else {
+            next();
+        }
+
+        if (!hasFrequency || name == null)
+            throw new IOException("incomplete station entry");
+        return new MenuTuple(frequency, name);
+    }
+
+    private int readInt() throws IOException {
+        int c = peekToken();
+        boolean negative = c == '-';
+        if (negative) {
+            next();
+            c = peek();
+        }
+        if (c < '0' || c > '9')
+            throw new IOException("number expected");
+
+        long value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE)
+                throw new IOException("number out of range");
+            next();
+            c = peek();
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        StringBuilder sb = new StringBuilder(16);
+        while (true) {
+            int c = next();
+            if (c == '"')
+                return sb.toString();
+            if (c == '\\') {
+                c = next();
+                switch (c) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(next(), 16);
+                            if (digit < 0)
+                                throw new IOException("invalid escape");
+                            code = (code << 4) | digit;
+                        }
+                        sb.append((char) code);
+                        break;
+                    default:
+                        // covers \" \\ and \/
+                        sb.append((char) c);
+                }
+            } else {
+                sb.append((char) c);
+            }
+        }
+    }
+
+    private void skipValue() throws IOException {
+        int c = peekToken();
+        if (c == '"') {
+            readString();
+        } else if (c == '{' || c == '[') {
+            int close = c == '{' ? '}' : ']';
+            next();
+            if (peekToken() == close) {
+                next();
+                return;
+            }
+            do {
+                if (close == '}') {
+                    readString();
+                    expect(':');
+                }
+                skipValue();
+            } while (nextSeparator(close));
+        } else {
+            // number, true, false or null
+            while (c != ',' && c != '}' && c != ']' && c != -1
+                    && !Character.isWhitespace(c)) {
+                next();
+                c = peek();
+            }
+        }
+    }
+
+    /**
+     * Consume either a ',' (more elements follow) or the closing character
+     */
+    private boolean nextSeparator(int close) throws IOException {
+        int c = peekToken();
+        next();
+        if (c == ',')
+            return true;
+        if (c == close)
+            return false;
+        throw new IOException("unexpected character " + (char) c);
+    }
+
+    private void expect(int expected) throws IOException {
+        if (peekToken() != expected)
+            throw new IOException("expected " + (char) expected);
+        next();
+    }
+
+    private int peekToken() throws IOException {
+        int c = peek();
+        while (c != -1 && Character.isWhitespace(c)) {
+            next();
+            c = peek();
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (mPeek == -2)
+            mPeek = mReader.read();
+        return mPeek;
+    }
+
+    private int next() throws IOException {
+        int c = peek();
+        if (c == -1)
+            throw new IOException("unexpected end of input");
+        mPeek = -2;
+        return c;
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Binary station list file, for bulk import and export of favorites
+ *
+ * Layout, all integers big endian:
+ *
+ *   int magic, int version, int count, int pool size
+ *   int[count] frequencies, ascending and unique
+ *   int[count] name offsets into the pool
+ *   byte[pool size] names, UTF-8
+ *
+ * The name of station i ends where the name of station i + 1 starts, or
+ * at the end of the pool. Files are memory-mapped when opened; stations
+ * are read on demand, and names are only decoded when asked for.
+ */
+public class StationListFile {
+    public static final String EXTENSION = ".efsl";
+
+    private static final int MAGIC = 0x4546534c; // "EFSL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer mBuffer;
+    private final int mCount;
+    private final int mPoolSize;
+    private final int mOffsetsStart;
+    private final int mPoolStart;
+
+    private StationListFile(ByteBuffer buffer) throws IOException {
+        mBuffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("not a station list file");
+        int version = buffer.getInt(4);
+        if (version != VERSION)
+            throw new IOException("unsupported station list version " + version);
+
+        mCount = buffer.getInt(8);
+        mPoolSize = buffer.getInt(12);
+        mOffsetsStart = HEADER_SIZE + mCount * 4;
+        mPoolStart = mOffsetsStart + mCount * 4;
+        if (mCount < 0 || mPoolSize < 0 || mCount > (buffer.capacity() - HEADER_SIZE) / 8
+                || (long) mPoolStart + mPoolSize != buffer.capacity())
+            throw new IOException("station list file size mismatch");
+
+        // check once, so that accessors can't go out of bounds
+        int lastFrequency = Integer.MIN_VALUE;
+        int lastOffset = 0;
+        for (int i = 0; i < mCount; i++) {
+            int frequency = buffer.getInt(HEADER_SIZE + i * 4);
+            int offset = buffer.getInt(mOffsetsStart + i * 4);
+            if (i > 0 && frequency <= lastFrequency)
+                throw new IOException("station list not sorted");
+            if (offset < lastOffset || offset > mPoolSize)
+                throw new IOException("bad name offset");
+            lastFrequency = frequency;
+            lastOffset = offset;
+        }
+    }
+
+    /**
+     * Open and map a station list file
+     *
+     * @param file file
+     * @return station list
+     * @throws IOException on read error or invalid file
+     */
+    public static StationListFile open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            // the mapping stays valid after closing the file
+            return new StationListFile(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Wrap station list data that is already in memory
+     *
+     * @param data file contents
+     * @return station list
+     * @throws IOException on invalid data
+     */
+    public static StationListFile wrap(byte[] data) throws IOException {
+        return new StationListFile(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Write favorites to a file. The file is replaced atomically.
+     *
+     * @param file file
+     * @param stations favorites
+     * @throws IOException on write error
+     */
+    public static void write(File file, FavoriteStore stations) throws IOException {
+        int count = stations.size();
+        byte[][] names = new byte[count][];
+        int poolSize = 0;
+        for (int i = 0; i < count; i++) {
+            String name = stations.get(i).name;
+            names[i] = (name != null ? name : "").getBytes(UTF8);
+            poolSize += names[i].length;
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeInt(poolSize);
+            for (int i = 0; i < count; i++)
+                out.writeInt(stations.get(i).frequency);
+            int offset = 0;
+            for (int i = 0; i < count; i++) {
+                out.writeInt(offset);
+                offset += names[i].length;
+            }
+            for (int i = 0; i < count; i++)
+                out.write(names[i]);
+            out.flush();
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("can't replace " + file);
+        }
+    }
+
+    /**
+     * Number of stations
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Frequency of station at given index
+     *
+     * @param index index in 0..size()-1
+     * @return frequency in KHz
+     */
+    public int getFrequency(int index) {
+        checkIndex(index);
+        return mBuffer.getInt(HEADER_SIZE + index * 4);
+    }
+
+    /**
+     * Name of station at given index, decoded on each call
+     *
+     * @param index index in 0..size()-1
+     * @return name
+     */
+    public String getName(int index) {
+        checkIndex(index);
+        int start = mBuffer.getInt(mOffsetsStart + index * 4);
+        int end = index + 1 < mCount ? mBuffer.getInt(mOffsetsStart + (index + 1) * 4)
+                : mPoolSize;
+
+        ByteBuffer name = mBuffer.duplicate();
+        name.position(mPoolStart + start);
+        name.limit(mPoolStart + end);
+        return UTF8.decode(name).toString();
+    }
+
+    /**
+     * Find a station by frequency
+     *
+     * @param frequency frequency in KHz
+     * @return index of the station, or (-(insertion point) - 1) if not found
+     */
+    public int indexOf(int frequency) {
+        int lo = 0;
+        int hi = mCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int f = mBuffer.getInt(HEADER_SIZE + mid * 4);
+            if (f < frequency)
+                lo = mid + 1;
+            else if (f > frequency)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * Create a favorite entry for a station
+     *
+     * @param index index in 0..size()-1
+     * @return new entry
+     */
+    public MenuTuple get(int index) {
+        return new MenuTuple(getFrequency(index), getName(index));
+    }
+
+    /**
+     * Add all stations to favorites, replacing entries with the same
+     * frequency
+     *
+     * @param stations favorites to add to
+     */
+    public void addTo(FavoriteStore stations) {
+        for (int i = 0; i < mCount; i++)
+            stations.put(get(i));
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mCount)
+            throw new IndexOutOfBoundsException("index " + index + ", size " + mCount);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+/**
+ * Table of stations found by a band scan, sorted by frequency
+ *
+ * Frequencies and signal strengths are kept in parallel primitive arrays,
+ * so lookups are a binary search and no objects are created per station.
+ */
+public class StationTable {
+    private static final int DEFAULT_CAPACITY = 32;
+
+    private int[] mFrequencies;
+    private int[] mStrengths;
+    private int mSize;
+
+    public StationTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public StationTable(int capacity) {
+        mFrequencies = new int[Math.max(capacity, 1)];
+        mStrengths = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Number of stations in the table
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Frequency of station at given index
+     *
+     * @param index index in 0..size()-1
+     * @return frequency in KHz
+     */
+    public int getFrequency(int index) {
+        return mFrequencies[index];
+    }
+
+    /**
+     * Signal strength of station at given index
+     *
+     * @param index index in 0..size()-1
+     * @return signal strength as reported by the receiver
+     */
+    public int getSignalStrength(int index) {
+        return mStrengths[index];
+    }
+
+    /**
+     * Find a station by frequency
+     *
+     * @param frequency frequency in KHz
+     * @return index of the station, or (-(insertion point) - 1) if not found
+     */
+    public int indexOf(int frequency) {
+        int lo = 0;
+        int hi = mSize - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int f = mFrequencies[mid];
+            if (f < frequency)
+                lo = mid + 1;
+            else if (f > frequency)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * Find the nearest station above a frequency
+     *
+     * @param frequency frequency in KHz
+     * @return index of the station, or -1 if there is none
+     */
+    public int higher(int frequency) {
+        int index = indexOf(frequency);
+        index = index >= 0 ? index + 1 : -(index + 1);
+        return index < mSize ? index : -1;
+    }
+
+    /**
+     * Find the nearest station below a frequency
+     *
+     * @param frequency frequency in KHz
+     * @return index of the station, or -1 if there is none
+     */
+    public int lower(int frequency) {
+        int index = indexOf(frequency);
+        return index >= 0 ? index - 1 : -(index + 1) - 1;
+    }
+
+    /**
+     * Insert a station, or update its signal strength if already known
+     *
+     * @param frequency frequency in KHz
+     * @param strength signal strength
+     */
+    public void put(int frequency, int strength) {
+        int index = indexOf(frequency);
+        if (index >= 0) {
+            mStrengths[index] = strength;
+            return;
+        }
+
+        index = -(index + 1);
+        ensureCapacity(mSize + 1);
+        System.arraycopy(mFrequencies, index, mFrequencies, index + 1, mSize - index);
+        System.arraycopy(mStrengths, index, mStrengths, index + 1, mSize - index);
+        mFrequencies[index] = frequency;
+        mStrengths[index] = strength;
+        mSize++;
+    }
+
+    /**
+     * Merge result arrays of a full scan into the table
+     *
+     * @param frequencies frequencies in KHz
+     * @param strengths signal strengths, same length as frequencies
+     */
+    public void putAll(int[] frequencies, int[] strengths) {
+        if (frequencies == null || strengths == null)
+            return;
+
+        int count = Math.min(frequencies.length, strengths.length);
+        ensureCapacity(mSize + count);
+        for (int i = 0; i < count; i++)
+            put(frequencies[i], strengths[i]);
+    }
+
+    /**
+     * Remove all stations
+     */
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Create an independent copy of this table, e.g. for handing a
+     * snapshot to another thread
+     *
+     * @return copy of the table
+     */
+    public StationTable copy() {
+        StationTable table = new StationTable(mSize);
+        table.set(this);
+        return table;
+    }
+
+    /**
+     * Overwrite this table with the contents of another one. Storage is
+     * reused if it is large enough.
+     *
+     * @param table table to copy from
+     */
+    public void set(StationTable table) {
+        mSize = 0;
+        ensureCapacity(table.mSize);
+        System.arraycopy(table.mFrequencies, 0, mFrequencies, 0, table.mSize);
+        System.arraycopy(table.mStrengths, 0, mStrengths, 0, table.mSize);
+        mSize = table.mSize;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mFrequencies.length)
+            return;
+
+        int newCapacity = Math.max(capacity, mFrequencies.length * 2);
+        int[] frequencies = new int[newCapacity];
+        int[] strengths = new int[newCapacity];
+        System.arraycopy(mFrequencies, 0, frequencies, 0, mSize);
+        System.arraycopy(mStrengths, 0, strengths, 0, mSize);
+        mFrequencies = frequencies;
+        mStrengths = strengths;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Delivers service events to FmRadioService.Callbacks on the UI thread
+ *
+ * Only the latest value of each event type is kept, and all pending
+ * events are delivered together at most once per frame. Events can be
+ * posted from any thread. Posting doesn't allocate: values are copied
+ * into preallocated buffers, and a single Runnable is reused for
+ * delivery.
+ *
+ * Objects handed to the callbacks are reused and only valid during the
+ * call.
+ */
+class CallbackDispatcher {
+    // minimum time between deliveries, one frame at 60 Hz
+    private static final long FRAME_INTERVAL = 16;
+
+    // pending event types
+    private static final int EVENT_STATE     = 1 << 0;
+    private static final int EVENT_FREQUENCY = 1 << 1;
+    private static final int EVENT_RDS       = 1 << 2;
+    private static final int EVENT_SCAN      = 1 << 3;
+    private static final int EVENT_SPECTRUM  = 1 << 4;
+
+    private Handler mHandler;
+    private FmRadioService.Callbacks mCallbacks;
+
+    // pending values, guarded by this
+    private int mPending;
+    private boolean mScheduled;
+    private long mLastDelivery;
+    private boolean mState;
+    private int mFrequency;
+    private int mOffset;
+    private final RdsState mRdsState = new RdsState();
+    private int mRdsChanged;
+    private final StationTable mStations = new StationTable();
+    private boolean mScanFinished;
+    private final Spectrum mSpectrum = new Spectrum();
+    private boolean mSpectrumFinished;
+
+    // values being delivered, only touched on the UI thread
+    private final RdsState mDeliveredRdsState = new RdsState();
+    private final StationTable mDeliveredStations = new StationTable();
+    private final Spectrum mDeliveredSpectrum = new Spectrum();
+
+    private final Runnable mDeliverAction = new Runnable() {
+        public void run() {
+            deliver();
+        }
+    };
+
+    /**
+     * Set handler of the UI thread and callbacks to deliver to. Events
+     * are dropped while either is null.
+     *
+     * @param handler UI thread handler
+     * @param callbacks callbacks
+     */
+    public synchronized void setTarget(Handler handler, FmRadioService.Callbacks callbacks) {
+        if (mHandler != null && mHandler != handler)
+            mHandler.removeCallbacks(mDeliverAction);
+        mHandler = handler;
+        mCallbacks = callbacks;
+        mScheduled = false;
+        mPending = 0;
+    }
+
+    public synchronized void postReceiverState(boolean state) {
+        mState = state;
+        schedule(EVENT_STATE);
+    }
+
+    public synchronized void postFrequency(int frequency, int offset) {
+        // RDS data of the previous frequency is obsolete
+        if (frequency != mFrequency) {
+            mPending &= ~EVENT_RDS;
+            mRdsChanged = 0;
+        }
+        mFrequency = frequency;
+        mOffset = offset;
+        schedule(EVENT_FREQUENCY);
+    }
+
+    public synchronized void postRdsData(RdsState state, int changed) {
+        mRdsState.set(state);
+        mRdsChanged |= changed;
+        schedule(EVENT_RDS);
+    }
+
+    public synchronized void postFullScanProgress(StationTable stations, boolean finished) {
+        mStations.set(stations);
+        mScanFinished = finished;
+        schedule(EVENT_SCAN);
+    }
+
+    public synchronized void postSpectrum(Spectrum spectrum, boolean finished) {
+        mSpectrum.set(spectrum);
+        mSpectrumFinished = finished;
+        schedule(EVENT_SPECTRUM);
+    }
+
+    private void schedule(int event) {
+        if (mHandler == null || mCallbacks == null)
+            return;
+
+        mPending |= event;
+        if (mScheduled)
+            return;
+
+        mScheduled = true;
+        long now = SystemClock.uptimeMillis();
+        mHandler.postAtTime(mDeliverAction, Math.max(now, mLastDelivery + FRAME_INTERVAL));
+    }
+
+    private void deliver() {
+        FmRadioService.Callbacks callbacks;
+        int pending;
+        boolean state;
+        int frequency;
+        int offset;
+        int rdsChanged;
+        boolean scanFinished;
+        boolean spectrumFinished;
+
+        synchronized (this) {
+            mScheduled = false;
+            mLastDelivery = SystemClock.uptimeMillis();
+            callbacks = mCallbacks;
+            pending = mPending;
+            mPending = 0;
+            if (callbacks == null || pending == 0)
+                return;
+
+            state = mState;
+            frequency = mFrequency;
+            offset = mOffset;
+            rdsChanged = mRdsChanged;
+            mRdsChanged = 0;
+            if ((pending & EVENT_RDS) != 0)
+                mDeliveredRdsState.set(mRdsState);
+            scanFinished = mScanFinished;
+            mScanFinished = false;
+            if ((pending & EVENT_SCAN) != 0)
+                mDeliveredStations.set(mStations);
+            spectrumFinished = mSpectrumFinished;
+            mSpectrumFinished = false;
+            if ((pending & EVENT_SPECTRUM) != 0)
+                mDeliveredSpectrum.set(mSpectrum);
+        }
+
+        if ((pending & EVENT_STATE) != 0)
+            callbacks.onReceiverStateChanged(state);
+        if ((pending & EVENT_FREQUENCY) != 0)
+            callbacks.onFrequencyChanged(frequency, offset);
+        if ((pending & EVENT_RDS) != 0)
+            callbacks.onRdsDataChanged(mDeliveredRdsState, rdsChanged);
+        if ((pending & EVENT_SCAN) != 0)
+            callbacks.onFullScanProgress(mDeliveredStations, scanFinished);
+        if ((pending & EVENT_SPECTRUM) != 0)
+            callbacks.onSpectrumProgress(mDeliveredSpectrum, spectrumFinished);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import java.util.Locale;
+
+/**
+ * Adapter showing the contents of a FavoriteStore, optionally filtered
+ * by station name or program type
+ *
+ * The store is the only copy of the favorites. After modifying it, call
+ * favoriteAdded() or favoriteRemoved() for single changes, which update
+ * the filter result incrementally, or favoritesChanged() otherwise.
+ */
+class FavoritesAdapter extends BaseAdapter {
+    /**
+     * Source of program types of stations
+     */
+    public interface PtyLookup {
+        /**
+         * @param frequency frequency in KHz
+         * @return last known PTY, or 0 if unknown
+         */
+        public int getPty(int frequency);
+    }
+
+    private final FavoriteStore mStore;
+    private final LayoutInflater mInflater;
+    private final String[] mPtyNames;
+    private PtyLookup mPtyLookup;
+
+    // lower case filter text, or null to show all favorites
+    private String mFilter;
+    // bit n is set if the name of PTY n matches the filter
+    private int mPtyMask;
+    // frequencies of matching favorites, ascending
+    private int[] mMatches = new int[16];
+    private int mMatchCount;
+
+    private static class ViewHolder {
+        TextView name;
+        TextView pty;
+    }
+
+    /**
+     * @param context context for inflating views
+     * @param store favorites to show
+     */
+    public FavoritesAdapter(Context context, FavoriteStore store) {
+        mStore = store;
+        mInflater = LayoutInflater.from(context);
+        mPtyNames = context.getResources().getStringArray(R.array.pty_names);
+    }
+
+    /**
+     * Set where program types are looked up, for display and filtering
+     *
+     * @param lookup lookup, or null if none are known
+     */
+    public void setPtyLookup(PtyLookup lookup) {
+        mPtyLookup = lookup;
+        if (mFilter != null)
+            rebuildMatches();
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Only show favorites whose name or program type contains the text
+     *
+     * @param text filter text, empty or null to show all favorites
+     */
+    public void setFilter(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            mFilter = null;
+            mMatchCount = 0;
+        } else {
+            mFilter = text.toString().toLowerCase(Locale.getDefault());
+            mPtyMask = 0;
+            // PTY 0 means unknown, nothing to match on
+            for (int i = 1; i < mPtyNames.length && i < 32; i++) {
+                if (mPtyNames[i].toLowerCase(Locale.getDefault()).contains(mFilter))
+                    mPtyMask |= 1 << i;
+            }
+            rebuildMatches();
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * A favorite has been added to the store, or its name changed
+     *
+     * @param entry the favorite
+     */
+    public void favoriteAdded(MenuTuple entry) {
+        if (mFilter != null) {
+            int index = indexOfMatch(entry.frequency);
+            boolean matches = matches(entry);
+            if (index < 0 && matches)
+                insertMatch(-(index + 1), entry.frequency);
+            else if (index >= 0 && !matches)
+                removeMatch(index);
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * A favorite has been removed from the store
+     *
+     * @param frequency frequency in KHz
+     */
+    public void favoriteRemoved(int frequency) {
+        if (mFilter != null) {
+            int index = indexOfMatch(frequency);
+            if (index >= 0)
+                removeMatch(index);
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * The store has been changed in bulk
+     */
+    public void favoritesChanged() {
+        if (mFilter != null)
+            rebuildMatches();
+        notifyDataSetChanged();
+    }
+
+    public int getCount() {
+        return mFilter != null ? mMatchCount : mStore.size();
+    }
+
+    public MenuTuple getItem(int position) {
+        if (mFilter == null)
+            return mStore.get(position);
+        if (position < 0 || position >= mMatchCount)
+            throw new IndexOutOfBoundsException("position " + position + ", size " + mMatchCount);
+        return mStore.get(mStore.indexOf(mMatches[position]));
+    }
+
+    public long getItemId(int position) {
+        // a frequency identifies a favorite
+        return getItem(position).frequency;
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    public View getView(int position, View convertView, ViewGroup parent) {
+        ViewHolder holder;
+        if (convertView == null) {
+            convertView = mInflater.inflate(android.R.layout.simple_list_item_2, parent, false);
+            holder = new ViewHolder();
+            holder.name = (TextView) convertView.findViewById(android.R.id.text1);
+            holder.pty = (TextView) convertView.findViewById(android.R.id.text2);
+            convertView.setTag(holder);
+        } else {
+            holder = (ViewHolder) convertView.getTag();
+        }
+
+        MenuTuple entry = getItem(position);
+        holder.name.setText(entry.toString());
+        int pty = getPty(entry.frequency);
+        holder.pty.setText(pty > 0 ? mPtyNames[pty] : "");
+        return convertView;
+    }
+
+    private int getPty(int frequency) {
+        if (mPtyLookup == null)
+            return 0;
+        int pty = mPtyLookup.getPty(frequency);
+        return pty > 0 && pty < mPtyNames.length ? pty : 0;
+    }
+
+    private boolean matches(MenuTuple entry) {
+        int pty = getPty(entry.frequency);
+        if (pty > 0 && (mPtyMask & (1 << pty)) != 0)
+            return true;
+        return entry.name != null
+                && entry.name.toLowerCase(Locale.getDefault()).contains(mFilter);
+    }
+
+    private void rebuildMatches() {
+        mMatchCount = 0;
+        for (int i = 0; i < mStore.size(); i++) {
+            MenuTuple entry = mStore.get(i);
+            if (matches(entry))
+                insertMatch(mMatchCount, entry.frequency);
+        }
+    }
+
+    private int indexOfMatch(int frequency) {
+        int lo = 0;
+        int hi = mMatchCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int f = mMatches[mid];
+            if (f < frequency)
+                lo = mid + 1;
+            else if (f > frequency)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -(lo + 1);
+    }
+
+    private void insertMatch(int index, int frequency) {
+        if (mMatchCount == mMatches.length) {
+            int[] matches = new int[mMatches.length * 2];
+            System.arraycopy(mMatches, 0, matches, 0, mMatchCount);
+            mMatches = matches;
+        }
+        System.arraycopy(mMatches, index, mMatches, index + 1, mMatchCount - index);
+        mMatches[index] = frequency;
+        mMatchCount++;
+    }
+
+    private void removeMatch(int index) {
+        mMatchCount--;
+        System.arraycopy(mMatches, index + 1, mMatches, index, mMatchCount - index);
+    }
+}
@@ -18,8 +18,10 @@
 package com.cyanogenmod.effem;
 
 import android.app.Activity;
+import android.app.AlertDialog;
 import android.content.pm.ActivityInfo;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.SharedPreferences;
 import android.media.MediaPlayer;
 import android.os.*;
@@ -30,7 +32,6 @@ import android.view.SubMenu;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.View.OnLongClickListener;
-import android.widget.ArrayAdapter;
 import android.widget.ImageButton;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -42,21 +43,24 @@ import android.content.ServiceConnection;
 import android.content.ComponentName;
 import android.graphics.Typeface;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.Comparator;
-import org.json.*;
 
 public class FmRadio extends Activity
         implements FmRadioService.Callbacks, ServiceConnection {
 
     private static final String LOG_TAG = "Effem";
     public static final String PREFS_NAME = "FMRadioPrefsFile";
+    private static final String STATION_FILE = "stations" + StationListFile.EXTENSION;
 
     // Menu identifiers
     private static final int BASE_OPTION_MENU = 0;
     private static final int BAND_SELECTION_MENU = 1;
     private static final int LOUDSPEAKER_SELECTION_MENU = 2;
-    private static final int STATION_SELECTION_MENU = 3;
+    private static final int FULL_SCAN_MENU = 4;
+    private static final int STATION_FILE_MENU = 5;
+    private static final int PTY_SEEK_MENU = 6;
+    private static final int SPECTRUM_MENU = 7;
 
     public static final int FM_BAND = Menu.FIRST;
     public static final int BAND_US = Menu.FIRST + 1;
@@ -67,7 +71,18 @@ public class FmRadio extends Activity
     public static final int OUTPUT_HEADSET = Menu.FIRST + 6;
     public static final int OUTPUT_SPEAKER = Menu.FIRST + 7;
     public static final int STATION_SELECT = Menu.FIRST + 8;
-    public static final int STATION_SELECT_MENU_ITEMS = STATION_SELECT + 1;
+    public static final int FULL_SCAN = Menu.FIRST + 9;
+    public static final int EXPORT_STATIONS = Menu.FIRST + 10;
+    public static final int IMPORT_STATIONS = Menu.FIRST + 11;
+    public static final int PTY_SEEK = Menu.FIRST + 12;
+    public static final int SPECTRUM = Menu.FIRST + 13;
+    // followed by one item per program type
+    public static final int PTY_SEEK_ITEMS = Menu.FIRST + 14;
+
+    // long-press stepping: fastest repeat interval, and interval at which
+    // the receiver follows the displayed frequency while stepping
+    private static final int STEP_MIN_INTERVAL = 30;
+    private static final int STEP_TUNE_INTERVAL = 500;
 
     // Application context
     private Context context;
@@ -77,18 +92,33 @@ public class FmRadio extends Activity
     private TextView mStationNameTextView;
     private TextView mProgramTypeTextView;
     private TextView mStationInfoTextView;
+    // band overview, filled in by spectrum sweeps
+    private SpectrumView mSpectrumView;
 
     // FM state
-    private HandlerThread mWorker;
-    private Handler mWorkerHandler;
     private FmRadioService mService;
     private int mCurrentFrequency;
     private boolean mFirstStart = true;
     private int mSelectedBand;
     private int mSelectedOutput;
 
-    // Array of the available stations in MHz
-    private ArrayAdapter<MenuTuple> mMenuAdapter;
+    // long-press stepping state
+    private boolean mStepping;
+    private int mStepFrequency;
+    private long mStepTuneTime;
+
+    // favorite stations, and an adapter view over them
+    private final FavoriteStore mFavorites = new FavoriteStore();
+    private FavoritesAdapter mFavoritesAdapter;
+    private StationBrowser mStationBrowser;
+
+    // persists favorites and settings as they change
+    private StationJournal mJournal;
+    // whether settings and favorites have been loaded, and whether the
+    // radio should be started once they are
+    private boolean mStateLoaded;
+    private boolean mStartPending;
+    private long mCreateTime;
 
     /**
      * Required method from parent class
@@ -98,26 +128,37 @@ public class FmRadio extends Activity
     @Override
     public void onCreate(Bundle icicle) {
         super.onCreate(icicle);
+        mCreateTime = SystemClock.uptimeMillis();
         context = getApplicationContext();
+
+        // bring up the service first, it can start the last station while
+        // the UI is being set up
+        startService(new Intent(this, FmRadioService.class)
+                .putExtra(FmRadioService.EXTRA_LAUNCH_TIME, mCreateTime));
         setContentView(R.layout.main);
 
-        // restore preferences
-        SharedPreferences settings = getSharedPreferences(PREFS_NAME, 0);
-        mSelectedBand = settings.getInt("selectedBand", 1);
-        mCurrentFrequency = settings.getInt("currentFrequency", 0);
-        if (context.getResources().getBoolean(R.bool.speaker_supported)) {
-            mSelectedOutput = settings.getInt("selectedOutput", 0) > 0 ? 1 : 0;
-        }
+        // restore settings and favorites in the background, so that the
+        // first frame doesn't wait for disk I/O
+        mJournal = FmRadioService.getJournal(this);
+        mJournal.loadAsync(new StationJournal.LoadCallback() {
+            public void onLoaded(StationJournal.State state) {
+                if (state == null)
+                    state = importPreferences();
+                else
+                    removePreferences();
+                final StationJournal.State loaded = state;
+                runOnUiThread(new Runnable() {
+                    public void run() {
+                        onStateLoaded(loaded);
+                    }
+                });
+            }
+        });
 
         // misc setup
         setVolumeControlStream(AudioManager.STREAM_MUSIC);
         setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_PORTRAIT);
 
-        // worker thread for async execution of FM stuff
-        mWorker = new HandlerThread("EffemWorker");
-        mWorker.start();
-        mWorkerHandler = new Handler(mWorker.getLooper());
-
         // ui preparations
         setupButtons();
     }
@@ -139,13 +180,16 @@ public class FmRadio extends Activity
     @Override
     public void onServiceConnected(ComponentName component, IBinder binder) {
         mService = ((FmRadioService.LocalBinder)binder).getService();
-        // start radio on initial start
-        mWorkerHandler.post(new Runnable() { public void run() {
-                if (mFirstStart)
-                    mService.startRadio(mSelectedBand, mCurrentFrequency, mSelectedOutput);
-                mService.resumeCallbacks();
-                mService.setCallbacks(FmRadio.this);
-                }});
+        mService.markStartupStage("service connected");
+        // start radio on initial start, this needs the saved settings
+        if (mFirstStart) {
+            if (mStateLoaded)
+                mService.startRadio(mSelectedBand, mCurrentFrequency, mSelectedOutput);
+            else
+                mStartPending = true;
+        }
+        mService.resumeCallbacks();
+        mService.setCallbacks(FmRadio.this);
         mFirstStart = false;
     }
 
@@ -165,6 +209,8 @@ public class FmRadio extends Activity
         // suspend callbacks to save power
         // especially, this will disable RDS
         mService.suspendCallbacks();
+        if (mService.isSpectrumSweepActive())
+            mService.stopSpectrumSweep();
 
         // if no playback is going on, the service can exit
         if (mService.isStarted() == false)
@@ -172,36 +218,203 @@ public class FmRadio extends Activity
 
         // unbind from service
         unbindService(this);
+
+        // the process may be killed from now on
+        mJournal.flush();
     }
 
     /**
-     * Saves the FmBand for next time the program is used and closes the radio
-     * and media player.
+     * Writes outstanding changes; everything else has been persisted as it
+     * happened. The journal itself stays open for the next instance.
      */
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        mWorker.quit();
+        if (mStationBrowser != null)
+            mStationBrowser.dismiss();
+        mJournal.flush();
+    }
 
-        // save preferences
-        SharedPreferences settings = getSharedPreferences(PREFS_NAME, 0);
-        SharedPreferences.Editor editor = settings.edit();
-        editor.putInt("selectedBand", mSelectedBand);
-        editor.putInt("currentFrequency", mCurrentFrequency);
+    /**
+     * Apply loaded settings and favorites
+     *
+     * @param state loaded state
+     */
+    private void onStateLoaded(StationJournal.State state) {
+        mSelectedBand = state.band >= 0 ? state.band : 1;
         if (context.getResources().getBoolean(R.bool.speaker_supported)) {
-            editor.putInt("selectedOutput", mSelectedOutput);
+            mSelectedOutput = state.output > 0 ? 1 : 0;
+        }
+        // a running service may have reported the frequency already
+        if (mCurrentFrequency == 0)
+            mCurrentFrequency = state.frequency;
+
+        mFavorites.putAll(state.favorites.toList());
+        mFavoritesAdapter.favoritesChanged();
+        invalidateOptionsMenu();
+        updateFavoriteButton();
+        mStateLoaded = true;
+
+        Log.i(LOG_TAG, "loaded " + state.favorites.size() + " favorites, "
+                + (SystemClock.uptimeMillis() - mCreateTime) + " ms after onCreate");
+
+        if (mService != null)
+            mService.markStartupStage("state loaded");
+        if (mStartPending && mService != null) {
+            mStartPending = false;
+            mService.startRadio(mSelectedBand, mCurrentFrequency, mSelectedOutput);
+        }
+    }
+
+    /**
+     * Read settings and favorites saved by earlier versions, and write
+     * them to the journal. Runs on the journal's background thread.
+     *
+     * @return imported state
+     */
+    private StationJournal.State importPreferences() {
+        StationJournal.State state = new StationJournal.State();
+        SharedPreferences settings = getSharedPreferences(PREFS_NAME, 0);
+        state.band = settings.getInt("selectedBand", 1);
+        state.frequency = settings.getInt("currentFrequency", 0);
+        state.output = settings.getInt("selectedOutput", 0);
+        // fresh installs have no station list
+        String stations = settings.getString("stations", "");
+        if (stations.length() > 0) {
+            try {
+                state.favorites.putAll(StationListCodec.decode(stations));
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Failed to load station list");
+            }
         }
-        try {
-            JSONObject conf = new JSONObject();
-            JSONArray stations = new JSONArray();
-            conf.put("stations", stations);
-            for (int i=0; i < mMenuAdapter.getCount(); i++)
-                stations.put(mMenuAdapter.getItem(i).toJSON());
-            editor.putString("stations", conf.toString());
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, "Failed to save station list");
+        mJournal.reset(state);
+        return state;
+    }
+
+    /**
+     * Drop settings and favorites of earlier versions once they have been
+     * imported. This waits for the next start, when the imported state is
+     * known to be on disk. Runs on the journal's background thread.
+     */
+    private void removePreferences() {
+        SharedPreferences settings = getSharedPreferences(PREFS_NAME, 0);
+        if (!settings.contains("stations"))
+            return;
+        settings.edit()
+                .remove("selectedBand")
+                .remove("currentFrequency")
+                .remove("selectedOutput")
+                .remove("stations")
+                .commit();
+    }
+
+    /**
+     * Location of the station list for import and export, in the app's
+     * directory on external storage so that it can be copied to other
+     * devices
+     *
+     * @return file, or null if external storage isn't available
+     */
+    private File getStationFile() {
+        File dir = getExternalFilesDir(null);
+        return dir != null ? new File(dir, STATION_FILE) : null;
+    }
+
+    /**
+     * Write all favorites to the station list file
+     */
+    private void exportStations() {
+        final File file = getStationFile();
+        if (file == null) {
+            Toast.makeText(context, R.string.station_file_error, Toast.LENGTH_SHORT).show();
+            return;
         }
-        editor.commit();
+
+        // write a copy, favorites may change in the meantime
+        final FavoriteStore stations = new FavoriteStore();
+        stations.putAll(mFavorites.toList());
+        new AsyncTask<Void, Void, Boolean>() {
+            @Override
+            protected Boolean doInBackground(Void... params) {
+                try {
+                    StationListFile.write(file, stations);
+                    return true;
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Failed to export stations to " + file, e);
+                    return false;
+                }
+            }
+
+            @Override
+            protected void onPostExecute(Boolean success) {
+                if (success)
+                    Toast.makeText(context, getString(R.string.stations_exported,
+                            stations.size(), file.getPath()), Toast.LENGTH_LONG).show();
+                else
+                    Toast.makeText(context, R.string.station_file_error,
+                            Toast.LENGTH_SHORT).show();
+            }
+        }.execute();
+    }
+
+    /**
+     * Add all stations from the station list file to the favorites
+     */
+    private void importStations() {
+        final File file = getStationFile();
+        if (file == null) {
+            Toast.makeText(context, R.string.station_file_error, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        new AsyncTask<Void, Void, FavoriteStore>() {
+            @Override
+            protected FavoriteStore doInBackground(Void... params) {
+                try {
+                    FavoriteStore stations = new FavoriteStore();
+                    StationListFile.open(file).addTo(stations);
+                    return stations;
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Failed to import stations from " + file, e);
+                    return null;
+                }
+            }
+
+            @Override
+            protected void onPostExecute(FavoriteStore stations) {
+                if (stations == null) {
+                    Toast.makeText(context, R.string.station_file_error,
+                            Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                onStationsImported(stations);
+            }
+        }.execute();
+    }
+
+    /**
+     * Merge imported stations into the favorites. Imported names replace
+     * existing ones.
+     *
+     * @param stations imported stations
+     */
+    private void onStationsImported(FavoriteStore stations) {
+        for (int i = 0; i < stations.size(); i++)
+            mFavorites.put(stations.get(i));
+
+        // a single snapshot instead of one journal record per station
+        StationJournal.State state = new StationJournal.State();
+        state.band = mSelectedBand;
+        state.frequency = mCurrentFrequency;
+        state.output = mSelectedOutput;
+        state.favorites.putAll(mFavorites.toList());
+        mJournal.reset(state);
+
+        mFavoritesAdapter.favoritesChanged();
+        invalidateOptionsMenu();
+        updateFavoriteButton();
+        Toast.makeText(context, getString(R.string.stations_imported, stations.size()),
+                Toast.LENGTH_SHORT).show();
     }
 
     @Override
@@ -223,41 +436,36 @@ public class FmRadio extends Activity
     @Override
     public void onFrequencyChanged(int frequency, int offset) {
         mCurrentFrequency = frequency;
-        String freqFormatted = FmUtils.formatFrequency(offset,
-                mCurrentFrequency);
+        String freqFormatted = formatFrequency(offset, mCurrentFrequency);
 
         ((ImageButton) findViewById(R.id.ScanUp)).setEnabled(true);
         ((ImageButton) findViewById(R.id.ScanDown)).setEnabled(true);
 
-        mFrequencyTextView.setText(freqFormatted);
+        // while stepping, the display runs ahead of the receiver
+        if (!mStepping)
+            mFrequencyTextView.setText(freqFormatted);
         mStationInfoTextView.setText("");
         mStationNameTextView.setText(R.string.no_rds);
         mProgramTypeTextView.setText("");
 
-        final ImageButton favorite = (ImageButton) findViewById(R.id.Favorite);
-        if (getFavorite(frequency))
-            favorite.setImageResource(R.drawable.favoritebuttonpress);
-        else
-            favorite.setImageResource(R.drawable.favoritebutton);
+        mSpectrumView.setFrequency(frequency);
+        updateFavoriteButton();
     }
 
     @Override
-    public void onRdsDataAvailable(Bundle rdsData) {
-        if (rdsData.containsKey("PSN")) {
-            mStationNameTextView.setText(rdsData.getString("PSN").trim());
+    public void onRdsDataChanged(RdsState rdsState, int changed) {
+        if ((changed & RdsData.FIELD_PSN) != 0) {
+            mStationNameTextView.setText(rdsState.getPsn());
         }
 
-        if (rdsData.containsKey("RT")) {
-            String text = rdsData.getString("RT").trim();
-
-            // only update if the text differs, otherwise this messes
-            // up the marquee
-            if (!mStationInfoTextView.getText().equals(text))
-                mStationInfoTextView.setText(text);
+        // RT is only passed on when the text differs, otherwise this
+        // would mess up the marquee
+        if ((changed & RdsData.FIELD_RT) != 0) {
+            mStationInfoTextView.setText(rdsState.getRt());
         }
 
-        if (rdsData.containsKey("PTY")) {
-            int pty = rdsData.getShort("PTY");
+        if ((changed & RdsData.FIELD_PTY) != 0) {
+            int pty = rdsState.getPty();
             if (pty > 0)
                 mProgramTypeTextView.setText(FmUtils.getPTYName(this, pty));
             else
@@ -265,32 +473,103 @@ public class FmRadio extends Activity
         }
     }
 
+    @Override
+    public void onFullScanProgress(StationTable stations, boolean finished) {
+        if (!finished) {
+            mStationInfoTextView.setText(getString(R.string.full_scan_progress,
+                    stations.size()));
+            return;
+        }
+
+        mStationInfoTextView.setText("");
+        if (stations.size() == 0) {
+            Toast.makeText(context, getString(R.string.full_scan_done, 0),
+                    Toast.LENGTH_SHORT).show();
+            return;
+        }
+        showScanResults(stations);
+    }
+
+    /**
+     * Show the stations found by a full scan. Tapping one tunes to it;
+     * they are only added to the favorites on request.
+     *
+     * @param stations scan result
+     */
+    private void showScanResults(StationTable stations) {
+        final int offset = mService.getChannelOffset();
+        final int[] frequencies = new int[stations.size()];
+        String[] labels = new String[frequencies.length];
+        for (int i = 0; i < frequencies.length; i++) {
+            frequencies[i] = stations.getFrequency(i);
+            labels[i] = formatFrequency(offset, frequencies[i]);
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.full_scan_done, frequencies.length))
+                .setItems(labels, new DialogInterface.OnClickListener() {
+                    public void onClick(DialogInterface dialog, int which) {
+                        if (mService.isStarted())
+                            mService.changeFrequency(FmRadioService.SEEK_ABSOLUTE,
+                                    frequencies[which]);
+                    }
+                })
+                .setPositiveButton(R.string.full_scan_add_favorites,
+                        new DialogInterface.OnClickListener() {
+                    public void onClick(DialogInterface dialog, int which) {
+                        addFavorites(frequencies, offset);
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Add stations to the favorites, skipping those already saved
+     *
+     * @param frequencies frequencies in KHz
+     * @param offset channel offset in KHz, for the default names
+     */
+    private void addFavorites(int[] frequencies, int offset) {
+        boolean changed = false;
+        for (int frequency : frequencies) {
+            if (getFavorite(frequency))
+                continue;
+            MenuTuple entry = new MenuTuple(frequency, formatFrequency(offset, frequency));
+            mFavorites.put(entry);
+            mJournal.favoriteAdded(entry);
+            changed = true;
+        }
+        if (changed) {
+            mFavoritesAdapter.favoritesChanged();
+            invalidateOptionsMenu();
+        }
+    }
+
+    @Override
+    public void onSpectrumProgress(Spectrum spectrum, boolean finished) {
+        mSpectrumView.setSpectrum(spectrum);
+    }
+
     /**
      * Sets up the buttons and their listeners
      */
     private void setupButtons() {
-        // populate favorites menu
-        mMenuAdapter = new ArrayAdapter<MenuTuple>(this, android.R.layout.simple_spinner_item);
-
-        try {
-            SharedPreferences settings = getSharedPreferences(PREFS_NAME, 0);
-            JSONObject conf = new JSONObject(settings.getString("stations", ""));
-            JSONArray stations = conf.getJSONArray("stations");
-            for (int i=0; i < stations.length(); i++) {
-                MenuTuple mt = MenuTuple.fromJSON(stations.getJSONObject(i));
-                mMenuAdapter.add(mt);
+        // favorites, shown by the station browser
+        mFavoritesAdapter = new FavoritesAdapter(this, mFavorites);
+        mFavoritesAdapter.setPtyLookup(new FavoritesAdapter.PtyLookup() {
+            public int getPty(int frequency) {
+                return mService != null ? mService.getCachedPty(frequency) : 0;
             }
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, "Failed to load station list");
-        }
+        });
 
         // get references to buttons
         mFrequencyTextView = (TextView) findViewById(R.id.FrequencyTextView);
         mStationNameTextView = (TextView) findViewById(R.id.PSNTextView);
         mStationInfoTextView = (TextView) findViewById(R.id.RTTextView);
         mProgramTypeTextView = (TextView) findViewById(R.id.PTYTextView);
-        final ImageButton scanUp = (ImageButton) findViewById(R.id.ScanUp);
-        final ImageButton scanDown = (ImageButton) findViewById(R.id.ScanDown);
+        mSpectrumView = (SpectrumView) findViewById(R.id.Spectrum);
+        final RepeatImageButton scanUp = (RepeatImageButton) findViewById(R.id.ScanUp);
+        final RepeatImageButton scanDown = (RepeatImageButton) findViewById(R.id.ScanDown);
         final ImageButton pause = (ImageButton) findViewById(R.id.Pause);
         final ImageButton favorite = (ImageButton) findViewById(R.id.Favorite);
         mStationInfoTextView.setSelected(true);
@@ -300,44 +579,55 @@ public class FmRadio extends Activity
         mFrequencyTextView.setTypeface(Typeface.create("sans-serif-light",
                 Typeface.NORMAL));
 
+        // tapping the band overview tunes to the channel, this also ends
+        // a running sweep
+        mSpectrumView.setOnChannelSelectedListener(
+                new SpectrumView.OnChannelSelectedListener() {
+            public void onChannelSelected(int frequency) {
+                if (mService.isStarted())
+                    mService.changeFrequency(FmRadioService.SEEK_ABSOLUTE, frequency);
+            }
+        });
+
+        // long-press steps through the band, faster the longer it's held
+        scanUp.setRepeatAcceleration(STEP_MIN_INTERVAL);
+        scanDown.setRepeatAcceleration(STEP_MIN_INTERVAL);
+
         scanUp.setOnLongClickListener (new OnLongClickListener() {
             public boolean onLongClick(View v) {
-                scanUp.setEnabled(false);
-                mWorkerHandler.post(new Runnable() { public void run() {
-                    mService.changeFrequency(FmRadioService.SEEK_STEPUP, 0);
-                }});
-                return true;
+                return step(1);
             }
         });
 
         scanDown.setOnLongClickListener (new OnLongClickListener() {
             public boolean onLongClick(View v) {
-                scanDown.setEnabled(false);
-                mWorkerHandler.post(new Runnable() { public void run() {
-                    mService.changeFrequency(FmRadioService.SEEK_STEPDOWN, 0);
-                }});
-                return true;
+                return step(-1);
             }
         });
 
+        RepeatImageButton.OnRepeatEndListener stepEnd =
+                new RepeatImageButton.OnRepeatEndListener() {
+            public void onRepeatEnd(View v) {
+                finishStep();
+            }
+        };
+        scanUp.setOnRepeatEndListener(stepEnd);
+        scanDown.setOnRepeatEndListener(stepEnd);
+
         scanUp.setOnClickListener(new OnClickListener() {
             public void onClick(View v) {
-                mWorkerHandler.post(new Runnable() { public void run() {
-                    mService.startRadio(mSelectedBand, mCurrentFrequency, mSelectedOutput);
-                    if (mService.isStarted())
-                        mService.changeFrequency(FmRadioService.SEEK_SCANUP, 0);
-                }});
+                // commands are queued, the seek runs once the radio is up
+                mService.startRadio(mSelectedBand, mCurrentFrequency, mSelectedOutput);
+                mService.changeFrequency(FmRadioService.SEEK_SCANUP, 0);
                 scanUp.setEnabled(false);
             }
         });
 
         scanDown.setOnClickListener(new OnClickListener() {
             public void onClick(View v) {
-                mWorkerHandler.post(new Runnable() { public void run() {
-                    mService.startRadio(mSelectedBand, mCurrentFrequency, mSelectedOutput);
-                    if (mService.isStarted())
-                        mService.changeFrequency(FmRadioService.SEEK_SCANDOWN, 0);
-                }});
+                // commands are queued, the seek runs once the radio is up
+                mService.startRadio(mSelectedBand, mCurrentFrequency, mSelectedOutput);
+                mService.changeFrequency(FmRadioService.SEEK_SCANDOWN, 0);
                 scanDown.setEnabled(false);
             }
         });
@@ -347,9 +637,7 @@ public class FmRadio extends Activity
                 if (mService.isStarted())
                     mService.stopRadio();
                 else {
-                    mWorkerHandler.post(new Runnable() { public void run() {
-                        mService.startRadio(mSelectedBand, mCurrentFrequency, mSelectedOutput);
-                    }});
+                    mService.startRadio(mSelectedBand, mCurrentFrequency, mSelectedOutput);
                 }
             }
         });
@@ -361,56 +649,125 @@ public class FmRadio extends Activity
         });
     }
 
-    private boolean getFavorite(int frequency) {
-        for (int i = 0; i < mMenuAdapter.getCount(); i++) {
-            if (mMenuAdapter.getItem(i).frequency == frequency)
-                return true;
+    /**
+     * Format frequency, using the service's precomputed labels if possible
+     *
+     * @param offset channel offset in KHz
+     * @param frequency frequency in KHz
+     * @return formatted string
+     */
+    private String formatFrequency(int offset, int frequency) {
+        FrequencyFormatter formatter = null;
+        if (mService != null)
+            formatter = mService.getFrequencyFormatter();
+        if (formatter != null && formatter.getBandPlan().getChannelOffset() == offset)
+            return formatter.format(frequency);
+        return FmUtils.formatFrequency(offset, frequency);
+    }
+
+    /**
+     * Advance the displayed frequency by one channel, wrapping at the band
+     * edges. The receiver is only retuned every STEP_TUNE_INTERVAL, and
+     * once more when stepping ends.
+     *
+     * @param direction 1 for up, -1 for down
+     * @return whether stepping should continue
+     */
+    private boolean step(int direction) {
+        if (mService == null || !mService.isStarted())
+            return false;
+        FrequencyFormatter formatter = mService.getFrequencyFormatter();
+        if (formatter == null)
+            return false;
+        BandPlan band = formatter.getBandPlan();
+
+        long now = SystemClock.uptimeMillis();
+        if (!mStepping) {
+            mStepping = true;
+            mStepFrequency = mCurrentFrequency;
+            mStepTuneTime = now;
+        }
+
+        int count = band.getChannelCount();
+        int channel = band.getChannel(mStepFrequency);
+        if (channel < 0) {
+            channel = (mStepFrequency - band.getMinFrequency()) / band.getChannelOffset();
+            channel = Math.max(0, Math.min(count - 1, channel));
+        }
+        channel = (channel + direction + count) % count;
+        mStepFrequency = band.getFrequency(channel);
+        mFrequencyTextView.setText(formatter.format(mStepFrequency));
+
+        if (now - mStepTuneTime >= STEP_TUNE_INTERVAL) {
+            mStepTuneTime = now;
+            mService.changeFrequency(FmRadioService.SEEK_ABSOLUTE, mStepFrequency);
         }
-        return false;
+        return true;
+    }
+
+    /**
+     * Tune to the frequency stepping ended on
+     */
+    private void finishStep() {
+        if (!mStepping)
+            return;
+        mStepping = false;
+        if (mService != null)
+            mService.changeFrequency(FmRadioService.SEEK_ABSOLUTE, mStepFrequency);
+    }
+
+    /**
+     * Show whether the current frequency is a favorite
+     */
+    private void updateFavoriteButton() {
+        final ImageButton favorite = (ImageButton) findViewById(R.id.Favorite);
+        if (getFavorite(mCurrentFrequency))
+            favorite.setImageResource(R.drawable.favoritebuttonpress);
+        else
+            favorite.setImageResource(R.drawable.favoritebutton);
+    }
+
+    private boolean getFavorite(int frequency) {
+        return mFavorites.contains(frequency);
     }
 
     private void toggleFavorite(View v, int frequency) {
         final ImageButton favorite = (ImageButton) findViewById(R.id.Favorite);
 
         // check if it already exists
-        if (getFavorite(frequency)) {
-            // favorite should be removed
-            for (int i = 0; i < mMenuAdapter.getCount(); i++) {
-                if (mMenuAdapter.getItem(i).frequency == frequency)
-                    mMenuAdapter.remove(mMenuAdapter.getItem(i));
-            }
-            invalidateOptionsMenu();
+        if (mFavorites.remove(frequency)) {
+            // favorite was removed
+            mJournal.favoriteRemoved(frequency);
+            mFavoritesAdapter.favoriteRemoved(frequency);
+            // the menu only depends on whether there are favorites
+            if (mFavorites.isEmpty())
+                invalidateOptionsMenu();
             favorite.setImageResource(R.drawable.favoritebutton);
         } else {
             // insert favorite
             int offset = mService.getChannelOffset();
-            String freqFormatted = FmUtils.formatFrequency(offset, frequency);
+            String freqFormatted = formatFrequency(offset, frequency);
             String freqString = "";
             if (mStationNameTextView.getText() != getText(R.string.no_rds)) {
                 freqString = mStationNameTextView.getText() + " (" + freqFormatted + ")";
             } else
                 freqString = freqFormatted;
-            mMenuAdapter.add(new MenuTuple(frequency, freqString));
-            // sort (ascending)
-            mMenuAdapter.sort(new Comparator<MenuTuple>() {
-                public int compare(MenuTuple l, MenuTuple r) {
-                    return l.frequency - r.frequency;
-                }
-                public boolean equals(Object obj) {
-                    return this == obj;
-                }
-            });
-            invalidateOptionsMenu();
+            MenuTuple entry = new MenuTuple(frequency, freqString);
+            mFavorites.put(entry);
+            mJournal.favoriteAdded(entry);
+            mFavoritesAdapter.favoriteAdded(entry);
+            if (mFavorites.size() == 1)
+                invalidateOptionsMenu();
             favorite.setImageResource(R.drawable.favoritebuttonpress);
         }
     }
 
     /**
-     * Sets up the options menu when the menu button is pushed, dynamic
-     * population of the station select menu
+     * Creates the options menu. Everything that changes is updated in
+     * onPrepareOptionsMenu, favorites are listed by the station browser.
      */
-    public boolean onPrepareOptionsMenu(Menu menu) {
-        menu.clear();
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
         boolean result = super.onCreateOptionsMenu(menu);
 
         // Create and populate the band selection menu
@@ -422,7 +779,6 @@ public class FmRadio extends Activity
         subMenu.add(BAND_SELECTION_MENU, BAND_JAPAN, Menu.NONE, R.string.band_ja);
         subMenu.add(BAND_SELECTION_MENU, BAND_CHINA, Menu.NONE, R.string.band_ch);
         subMenu.setGroupCheckable(BAND_SELECTION_MENU, true, true);
-        subMenu.getItem(mSelectedBand).setChecked(true);
 
         // Create and populate the speaker/headset selection menu if speaker supported
         if (context.getResources().getBoolean(R.bool.speaker_supported)) {
@@ -434,29 +790,77 @@ public class FmRadio extends Activity
             subMenu.add(LOUDSPEAKER_SELECTION_MENU, OUTPUT_SPEAKER, Menu.NONE,
                 R.string.output_select_loudspeaker);
             subMenu.setGroupCheckable(LOUDSPEAKER_SELECTION_MENU, true, true);
-            subMenu.getItem(mSelectedOutput).setChecked(true);
         }
 
-        // Create the station select menu
-        subMenu = menu.addSubMenu(BASE_OPTION_MENU, STATION_SELECT, Menu.NONE,
-                R.string.station_select);
-        subMenu.getItem().setShowAsAction(MenuItem.SHOW_AS_ACTION_ALWAYS);
+        // Full band scan, or cancel a running one
+        menu.add(FULL_SCAN_MENU, FULL_SCAN, Menu.NONE, R.string.full_scan);
 
-        // Dynamically populate the station select menu
-        if (mMenuAdapter.isEmpty()) {
-            subMenu.setGroupEnabled(STATION_SELECTION_MENU, false);
-        } else {
-            subMenu.setGroupEnabled(STATION_SELECTION_MENU, true);
-            for (int i = 0; i < mMenuAdapter.getCount(); i++) {
-                subMenu.add(STATION_SELECTION_MENU, STATION_SELECT_MENU_ITEMS + i, Menu.NONE,
-                        mMenuAdapter.getItem(i).toString());
-            }
-        }
+        // Band overview
+        menu.add(SPECTRUM_MENU, SPECTRUM, Menu.NONE, R.string.spectrum_show);
+
+        // Seek by program type, PTY 0 means none
+        String[] ptyNames = context.getResources().getStringArray(R.array.pty_names);
+        subMenu = menu.addSubMenu(BASE_OPTION_MENU, PTY_SEEK, Menu.NONE, R.string.pty_seek);
+        for (int i = 1; i < ptyNames.length; i++)
+            subMenu.add(PTY_SEEK_MENU, PTY_SEEK_ITEMS + i, Menu.NONE, ptyNames[i]);
+
+        // Station list import and export
+        menu.add(STATION_FILE_MENU, EXPORT_STATIONS, Menu.NONE, R.string.export_stations);
+        menu.add(STATION_FILE_MENU, IMPORT_STATIONS, Menu.NONE, R.string.import_stations);
+
+        // Station browser
+        menu.add(BASE_OPTION_MENU, STATION_SELECT, Menu.NONE, R.string.station_select)
+                .setShowAsAction(MenuItem.SHOW_AS_ACTION_ALWAYS);
         return result;
     }
 
-    public int getSelectStationMenuItem(MenuItem item) {
-        return item.getItemId() - STATION_SELECT_MENU_ITEMS;
+    /**
+     * Updates the options menu to the current state. This doesn't depend
+     * on the number of favorites.
+     */
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        // band items are in the same order as the band numbers
+        menu.findItem(BAND_US + mSelectedBand).setChecked(true);
+        if (context.getResources().getBoolean(R.bool.speaker_supported)) {
+            menu.findItem(mSelectedOutput == 0 ? OUTPUT_HEADSET : OUTPUT_SPEAKER)
+                    .setChecked(true);
+        }
+
+        boolean started = mService != null && mService.isStarted();
+        menu.findItem(FULL_SCAN)
+                .setTitle((mService != null && mService.isFullScanActive())
+                        ? R.string.full_scan_stop : R.string.full_scan)
+                .setEnabled(started);
+        menu.findItem(PTY_SEEK).setEnabled(started);
+        boolean spectrumShown = mSpectrumView.getVisibility() == View.VISIBLE;
+        menu.findItem(SPECTRUM)
+                .setTitle(spectrumShown ? R.string.spectrum_hide : R.string.spectrum_show)
+                .setEnabled(started || spectrumShown);
+
+        menu.findItem(EXPORT_STATIONS).setEnabled(mStateLoaded && !mFavorites.isEmpty());
+        menu.findItem(IMPORT_STATIONS).setEnabled(mStateLoaded);
+        menu.findItem(STATION_SELECT).setEnabled(!mFavorites.isEmpty());
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    /**
+     * Open the station browser
+     */
+    private void showStationBrowser() {
+        if (mStationBrowser == null) {
+            mStationBrowser = new StationBrowser(this, mFavoritesAdapter,
+                    new StationBrowser.OnStationSelectedListener() {
+                public void onStationSelected(MenuTuple station) {
+                    if (!mService.isStarted())
+                        mService.startRadio(mSelectedBand, station.frequency, mSelectedOutput);
+                    else
+                        mService.changeFrequency(FmRadioService.SEEK_ABSOLUTE,
+                                station.frequency);
+                }
+            });
+        }
+        mStationBrowser.show();
     }
 
     /**
@@ -487,61 +891,61 @@ public class FmRadio extends Activity
                     default:
                         break;
                 }
-                mWorkerHandler.post(new Runnable() { public void run() {
-                    mService.stopRadio();
+                mJournal.settingsChanged(mSelectedBand, mSelectedOutput);
+                // the service resumes the band where it was left
+                if (mService.isStarted())
+                    mService.changeBand(mSelectedBand);
+                else
                     mService.startRadio(mSelectedBand, 0, mSelectedOutput);
-                }});
                 break;
 
             case LOUDSPEAKER_SELECTION_MENU:
                 mSelectedOutput = (item.getItemId() == OUTPUT_HEADSET) ? 0 : 1;
-                mWorkerHandler.post(new Runnable() { public void run() {
-                    mService.stopRadio();
+                mJournal.settingsChanged(mSelectedBand, mSelectedOutput);
+                // a running receiver only needs new audio routing
+                if (mService.isStarted())
+                    mService.setAudioOutput(mSelectedOutput);
+                else
                     mService.startRadio(mSelectedBand, mCurrentFrequency, mSelectedOutput);
-                }});
                 break;
 
-            case STATION_SELECTION_MENU:
-                final int freq = mMenuAdapter.getItem(getSelectStationMenuItem(item)).frequency;
-                mWorkerHandler.post(new Runnable() { public void run() {
-                    if (!mService.isStarted())
-                        mService.startRadio(mSelectedBand, freq, mSelectedOutput);
-                    else
-                        mService.changeFrequency(FmRadioService.SEEK_ABSOLUTE, freq);
-                }});
+            case FULL_SCAN_MENU:
+                if (mService.isFullScanActive())
+                    mService.stopFullScan();
+                else
+                    mService.startFullScan();
                 break;
-            default:
-                break;
-        }
-        return super.onOptionsItemSelected(item);
-    }
-}
-
-class MenuTuple {
-    public int frequency;
-    public String name;
-
-    public MenuTuple(int frequency, String name) {
-        this.frequency = frequency;
-        this.name = name;
-    }
 
-    public String toString() {
-        return name;
-    }
+            case SPECTRUM_MENU:
+                if (mSpectrumView.getVisibility() == View.VISIBLE) {
+                    mSpectrumView.setVisibility(View.GONE);
+                    if (mService.isSpectrumSweepActive())
+                        mService.stopSpectrumSweep();
+                } else {
+                    mSpectrumView.setFrequency(mCurrentFrequency);
+                    mSpectrumView.setVisibility(View.VISIBLE);
+                    mService.startSpectrumSweep();
+                }
+                break;
 
-    // JSON
+            case PTY_SEEK_MENU:
+                mService.seekPty(item.getItemId() - PTY_SEEK_ITEMS, true);
+                break;
 
-    public JSONObject toJSON() throws JSONException {
-        JSONObject json = new JSONObject();
-        json.put("frequency", frequency);
-        json.put("name", name);
-        return json;
-    }
+            case STATION_FILE_MENU:
+                if (item.getItemId() == EXPORT_STATIONS)
+                    exportStations();
+                else
+                    importStations();
+                break;
 
-    public static MenuTuple fromJSON(JSONObject json) throws JSONException {
-        MenuTuple mt = new MenuTuple(json.getInt("frequency"),
-                json.getString("name"));
-        return mt;
+            case BASE_OPTION_MENU:
+                if (item.getItemId() == STATION_SELECT)
+                    showStationBrowser();
+                break;
+            default:
+                break;
+        }
+        return super.onOptionsItemSelected(item);
     }
 }
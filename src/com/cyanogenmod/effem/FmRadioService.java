@@ -25,7 +25,6 @@ import android.media.AudioManager.OnAudioFocusChangeListener;
 import android.os.*;
 import android.util.Log;
 import android.widget.Toast;
-import com.stericsson.hardware.fm.FmBand;
 import com.stericsson.hardware.fm.FmReceiver;
 import android.media.AudioSystem;
 import android.app.Notification.Builder;
@@ -36,7 +35,14 @@ import android.app.Service;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.BroadcastReceiver;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 public class FmRadioService extends Service
         implements AudioManager.OnAudioFocusChangeListener {
@@ -56,23 +62,208 @@ public class FmRadioService extends Service
     static final int AUDIO_DEFAULT = 0;
     static final int AUDIO_SPEAKER = 1;
 
-    private Handler mHandler;
-    private MediaPlayer mMediaPlayer;
-    private FmBand mFmBand;
-    private FmReceiver mFmReceiver;
+    // start intent extra: uptime in ms when the user launched the app.
+    // Starts the stage trace, and the warm start if enabled.
+    static final String EXTRA_LAUNCH_TIME = "com.cyanogenmod.effem.LAUNCH_TIME";
+
+    // reception checks for AF following and signal sampling: interval
+    // in ms, and number of weak checks in a row before an AF switch
+    private static final int AF_CHECK_INTERVAL = 1000;
+    private static final int AF_WEAK_CHECKS = 3;
+    // time for the PI code to arrive after an AF switch, in ms
+    private static final int AF_PI_TIMEOUT = 2000;
+
+    // time for a program type to arrive after a PTY seek, in ms
+    private static final int PTY_SEEK_TIMEOUT = 3000;
+
+    // signal strength history, 10 minutes at one sample per check
+    private static final int SIGNAL_SAMPLES = 600;
+
+    // channels measured per spectrum sweep command
+    private static final int SWEEP_BATCH = 8;
+
+    // audio routing: digital playback of the receiver output, or legacy
+    // routing of the FM output device. Remembered once known, for the
+    // build it was found on.
+    private static final int ROUTING_UNKNOWN = 0;
+    private static final int ROUTING_DIGITAL = 1;
+    private static final int ROUTING_LEGACY  = 2;
+    private static final String AUDIO_PREFS = "audio";
+    private static final String AUDIO_ROUTING = "routing";
+    private static final String AUDIO_BUILD = "build";
+
+    // RDS cache size and file name
+    private static final int RDS_CACHE_SIZE = 256;
+    private static final String RDS_CACHE_FILE = "rds_cache";
+
+    // favorites and settings, shared by all components of the process
+    private static StationJournal sJournal;
+
+    private volatile Handler mHandler;
+    private volatile BandPlan mFmBand;
+    private volatile FrequencyFormatter mFrequencyFormatter;
+    private FmReceiverBackend mFmReceiver;
+    // cached receiver state, changed by requests and completed by the
+    // worker thread; mReceiverRunning tells whether the receiver has been
+    // powered up, and is only used on the worker thread
+    private final ReceiverStateMachine mStates = new ReceiverStateMachine();
+    private boolean mReceiverRunning;
     private Notification.Builder mRadioNotification;
-    private Notification mNotificationInstance;
+    private NotificationUpdater mNotificationUpdater;
     private NotificationManager mNotificationManager;
     private AudioManager mAudioManager;
-    private FmReceiver.OnScanListener mReceiverScanListener;
-    private FmReceiver.OnRDSDataFoundListener mReceiverRdsDataFoundListener;
-    private FmReceiver.OnStartedListener mReceiverStartedListener;
+    private FmReceiverBackend.Listener mReceiverListener;
     private BroadcastReceiver mHeadsetReceiver;
 
-    private int mCurrentFrequency;
-    private int mAudioOutput = 0;
-    private boolean mCallbacksEnabled = false;
-    private boolean mHeadsetConnected = false;
+    private volatile int mCurrentFrequency;
+    private volatile int mAudioOutput = 0;
+    // digital audio player, kept prepared for the service's lifetime.
+    // Only used on the worker thread.
+    private MediaPlayer mMediaPlayer;
+    private boolean mPlayerPrepared;
+    private boolean mPlayerPlaying;
+    private boolean mPlayWhenPrepared;
+    // audio is silenced while a spectrum sweep moves the receiver
+    private boolean mAudioMuted;
+    // whether the receiver was running when preparation started; only
+    // then does a failure tell that digital audio doesn't work
+    private boolean mPreparedWhileRunning;
+    private int mAudioRouting = ROUTING_UNKNOWN;
+    private long mAudioStartTime;
+    // warm start: the service starts the last session by itself, before
+    // the activity has connected. Stages from launch to audio are traced.
+    private boolean mFastStartEnabled;
+    private long mCreateTime;
+    private final StartupTrace mStartupTrace = new StartupTrace();
+    // last band, frequency and output for warm starts
+    private StationJournal mJournal;
+    private final LatencyStats mLaunchStats = new LatencyStats();
+    // receiver start until audio, and live output switches, for comparison
+    private final LatencyStats mStartStats = new LatencyStats();
+    private final LatencyStats mOutputSwitchStats = new LatencyStats();
+    private volatile boolean mCallbacksEnabled = false;
+    private volatile boolean mHeadsetConnected = false;
+
+    // all receiver commands are executed by the scheduler's worker thread
+    private CommandScheduler mScheduler;
+    // time commands spend queued and executing
+    private final LatencyStats mCommandQueueStats = new LatencyStats();
+    private final LatencyStats mCommandStats = new LatencyStats();
+
+    // tuning requests, guarded by mTuneLock. Relative steps build on the
+    // target of the latest request until it has been executed.
+    private final Object mTuneLock = new Object();
+    private int mTuneSerial;
+    private int mTunedSerial;
+    private int mTargetFrequency;
+    // request that started the running seek, and when it was started
+    private volatile int mSeekSerial;
+    private volatile long mSeekStartTime;
+
+    // stations known in the active band, from scans, seeks and the RDS
+    // cache. Seeks jump straight to well received ones if fast seek is
+    // enabled. Only used on the worker thread.
+    private final StationTable mKnownStations = new StationTable();
+    private volatile boolean mFastSeekEnabled;
+    private int mFastSeekThreshold;
+    private final LatencyStats mFastSeekStats = new LatencyStats();
+    private final LatencyStats mHardwareSeekStats = new LatencyStats();
+
+    // program types of stations in the active band, for PTY seeks. The
+    // running PTY seek is checked against live RDS data of the station
+    // it jumped to; these fields are guarded by mRdsState.
+    private final PtyIndex mPtyIndex = new PtyIndex();
+    private int mPtySeekPty;
+    private boolean mPtySeekUp;
+    private int mPtySeekFrequency;
+    private int mPtySeekSerial;
+    private long mPtySeekDeadline;
+    // a station that sends no program type doesn't stop the seek
+    private final Runnable mPtySeekTimeout = new Runnable() {
+        public void run() {
+            int frequency;
+            synchronized (mRdsState) {
+                if (mPtySeekPty <= 0 || SystemClock.uptimeMillis() < mPtySeekDeadline)
+                    return;
+                synchronized (mTuneLock) {
+                    if (mPtySeekSerial != mTuneSerial)
+                        return;
+                }
+                frequency = mPtySeekFrequency;
+            }
+            Log.i(LOG_TAG, "no program type on " + frequency + " KHz, continuing seek");
+            mPtyIndex.remove(frequency);
+            continuePtySeek();
+        }
+    };
+
+    // AF following: AF lists of programs heard, and periodic reception
+    // checks on the worker thread while the receiver is started
+    private final AfTable mAfTable = new AfTable();
+    private final LatencyStats mAfSwitchStats = new LatencyStats();
+    private volatile boolean mAfEnabled;
+    private int mAfThreshold;
+    private int mAfWeakChecks;
+    // AF switch waiting for the PI code on the new frequency. Guarded by
+    // mRdsState; mAfLivePi is only set from received data, not the cache.
+    private int mAfPendingFrequency = -1;
+    private int mAfPendingPi;
+    private int mAfPendingFrom;
+    private long mAfPendingDeadline;
+    private long mAfPendingLatency;
+    private int mAfLivePi = -1;
+    // reception checks only run while the receiver is started, and AF
+    // following is enabled or someone reads signal statistics. The flags
+    // are only used on the main thread; the handler runs on it and also
+    // takes toasts and session saves from other threads.
+    private Handler mMonitorHandler;
+    private boolean mReceiverActive;
+    private boolean mMonitoring;
+
+    private final SignalSampler mSignalSampler = new SignalSampler(SIGNAL_SAMPLES);
+    private volatile int mSamplingClients;
+    private final Runnable mMonitorTick = new Runnable() {
+        public void run() {
+            mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "reception check",
+                    new Runnable() {
+                public void run() {
+                    checkReception();
+                }
+            });
+            mMonitorHandler.postDelayed(this, AF_CHECK_INTERVAL);
+        }
+    };
+
+    // RDS data of the current frequency
+    private final RdsState mRdsState = new RdsState();
+
+    // last known RDS identity of each frequency, for instant display on
+    // retune; mCachedRdsData is guarded by mRdsState
+    private final RdsCache mRdsCache = new RdsCache(RDS_CACHE_SIZE);
+    private final RdsData mCachedRdsData = new RdsData();
+
+    // full band scan state
+    private final StationTable mStationTable = new StationTable();
+    private volatile boolean mFullScanActive = false;
+
+    // state of the bands that aren't active, indexed by band, so that
+    // switching back resumes where the band was left. Only used on the
+    // worker thread.
+    private static class BandState {
+        int frequency;
+        final StationTable stations = new StationTable();
+        final StationTable knownStations = new StationTable();
+    }
+    private final BandState[] mBandStates = new BandState[BandPlan.BAND_CHINA + 1];
+    private final LatencyStats mBandSwitchStats = new LatencyStats();
+
+    // spectrum sweep state. The sweep measures a few channels per
+    // command, so that other commands get through in between. Only used
+    // on the worker thread, except for mSweepActive.
+    private final Spectrum mSpectrum = new Spectrum();
+    private volatile boolean mSweepActive = false;
+    private int mSweepChannel;
+    private int mSweepReturnFrequency;
 
     // Binder for direct access to local service
     private Binder mBinder = new LocalBinder();
@@ -82,8 +273,10 @@ public class FmRadioService extends Service
         }
     }
 
-    // callbacks for activity
+    // callbacks for activity, always called on the UI thread
+    // objects passed to them are reused and only valid during the call
     private Callbacks mCallbacks = null;
+    private final CallbackDispatcher mDispatcher = new CallbackDispatcher();
     public interface Callbacks {
         /**
          * Receiver changed state
@@ -101,21 +294,97 @@ public class FmRadioService extends Service
         public void onFrequencyChanged(int frequency, int offset);
 
         /**
-         * New RDS data is available
+         * RDS data of the current frequency changed
+         *
+         * @param rdsState snapshot of all RDS data known for the frequency
+         * @param changed mask of changed fields (RdsData.FIELD_*)
+         */
+        public void onRdsDataChanged(RdsState rdsState, int changed);
+
+        /**
+         * Full band scan progress
+         *
+         * @param stations snapshot of the stations found so far
+         * @param finished whether the scan has ended (completed or aborted)
+         */
+        public void onFullScanProgress(StationTable stations, boolean finished);
+
+        /**
+         * Spectrum sweep progress
          *
-         * @param rdsData Bundle with key to value mappings
+         * @param spectrum snapshot of the channels measured so far
+         * @param finished whether the sweep has ended (completed or aborted)
          */
-        public void onRdsDataAvailable(Bundle rdsData);
+        public void onSpectrumProgress(Spectrum spectrum, boolean finished);
+    }
+
+    /**
+     * Get the station journal of this process. Activity instances come and
+     * go, but the journal files must only have one writer, so the journal
+     * is created once and never closed.
+     *
+     * @param context any context of the app
+     * @return shared journal
+     */
+    static synchronized StationJournal getJournal(Context context) {
+        if (sJournal == null) {
+            sJournal = new StationJournal(context.getApplicationContext().getFilesDir());
+            sJournal.setErrorListener(new StationJournal.ErrorListener() {
+                public void onError(String message, IOException e) {
+                    Log.e(LOG_TAG, "station journal: " + message + ": " + e.toString());
+                }
+            });
+        }
+        return sJournal;
     }
 
     @Override
     public void onCreate() {
         super.onCreate();
+        mCreateTime = SystemClock.uptimeMillis();
 
-        mFmReceiver = (FmReceiver)getSystemService("fm_receiver");
+        if (getResources().getBoolean(R.bool.simulated_receiver)) {
+            Log.i(LOG_TAG, "using simulated receiver");
+            mFmReceiver = new SimulatedReceiverBackend();
+        } else {
+            mFmReceiver = new StericssonReceiverBackend(
+                    (FmReceiver)getSystemService("fm_receiver"));
+        }
         mNotificationManager = (NotificationManager)getSystemService(Context.NOTIFICATION_SERVICE);
         mAudioManager = (AudioManager)getSystemService(Context.AUDIO_SERVICE);
         prepareNotification();
+        loadRdsCache();
+        mFastSeekEnabled = getResources().getBoolean(R.bool.fast_seek);
+        mFastSeekThreshold = getResources().getInteger(R.integer.fast_seek_threshold);
+        mAfEnabled = getResources().getBoolean(R.bool.af_follow);
+        mAfThreshold = getResources().getInteger(R.integer.af_threshold);
+        // a system update may change which routing works
+        SharedPreferences audioPrefs = getSharedPreferences(AUDIO_PREFS, MODE_PRIVATE);
+        if (Build.FINGERPRINT.equals(audioPrefs.getString(AUDIO_BUILD, null)))
+            mAudioRouting = audioPrefs.getInt(AUDIO_ROUTING, ROUTING_UNKNOWN);
+        mFastStartEnabled = getResources().getBoolean(R.bool.fast_start);
+        mStates.setListener(new ReceiverStateMachine.Listener() {
+            public void onStateChanged(int from, int to) {
+                Log.v(LOG_TAG, "receiver " + ReceiverStateMachine.getName(from) + " -> "
+                        + ReceiverStateMachine.getName(to));
+            }
+        });
+        mMonitorHandler = new Handler();
+        mJournal = getJournal(this);
+
+        mScheduler = new CommandScheduler("EffemWorker", new CommandScheduler.Listener() {
+            public void onCommandExecuted(String name, long queuedNanos, long executionNanos) {
+                mCommandQueueStats.record(queuedNanos);
+                mCommandStats.record(executionNanos);
+                if (Log.isLoggable(LOG_TAG, Log.VERBOSE))
+                    Log.v(LOG_TAG, name + ": queued " + queuedNanos / 1000 + " us, took "
+                            + executionNanos / 1000 + " us");
+            }
+
+            public void onCommandFailed(String name, RuntimeException e) {
+                Log.e(LOG_TAG, name + " failed: " + e.toString());
+            }
+        });
 
         // listen for headset connection events
         mHeadsetReceiver = new BroadcastReceiver() {
@@ -130,30 +399,48 @@ public class FmRadioService extends Service
                     if (mCallbacksEnabled == false) {
                         Log.i(LOG_TAG, "nothing to do, stopping service");
                         stopSelf();
-                        updateReceiverState(false);
+                        stopRadio();
                         // enter special state that allows the user to start up
                         // the activity again from the notification area
-                        //startForeground(PLAY_NOTIFICATION, mNotificationInstance);
+                        //startForeground(PLAY_NOTIFICATION, mNotificationUpdater.flush());
                     } else {
-                        updateReceiverState(false);
+                        stopRadio();
                     }
                 }
             }
         };
-        registerReceiver(mHeadsetReceiver, new IntentFilter(Intent.ACTION_HEADSET_PLUG));
+        // the sticky broadcast tells the headset state right away, which a
+        // warm start needs before the receiver gets it delivered
+        Intent headset = registerReceiver(mHeadsetReceiver,
+                new IntentFilter(Intent.ACTION_HEADSET_PLUG));
+        if (headset != null)
+            mHeadsetConnected = headset.getIntExtra("state", -1) == 1;
     }
 
     @Override
     public void onAudioFocusChange(int focus) {
         switch (focus) {
             case AudioManager.AUDIOFOCUS_LOSS:
-                updateReceiverState(false);
+                stopRadio();
                 break;
             case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT:
-                updatePlayState(false);
+                if (!mStates.accepts(ReceiverStateMachine.COMMAND_PAUSE))
+                    break;
+                invalidateTuning();
+                mScheduler.submit(CommandScheduler.PRIORITY_URGENT, "pause", new Runnable() {
+                    public void run() {
+                        updatePlayState(false);
+                    }
+                });
                 break;
             case AudioManager.AUDIOFOCUS_GAIN:
-                updatePlayState(true);
+                if (!mStates.accepts(ReceiverStateMachine.COMMAND_RESUME))
+                    break;
+                mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "resume", new Runnable() {
+                    public void run() {
+                        updatePlayState(true);
+                    }
+                });
                 break;
             default:
                 Log.e(LOG_TAG, "unknown audio focus change: " + focus);
@@ -162,97 +449,255 @@ public class FmRadioService extends Service
 
     @Override
     public void onDestroy() {
+        Log.i(LOG_TAG, "notifications posted: " + mNotificationUpdater.getPostedCount()
+                + ", suppressed: " + mNotificationUpdater.getSuppressedCount());
+        Log.i(LOG_TAG, "commands executed: " + mScheduler.getExecutedCount()
+                + ", superseded: " + mScheduler.getSupersededCount()
+                + "; queued: " + mCommandQueueStats + "; executing: " + mCommandStats);
+        Log.i(LOG_TAG, "fast seeks: " + mFastSeekStats + "; hardware seeks: "
+                + mHardwareSeekStats);
+        Log.i(LOG_TAG, "AF switches: " + mAfSwitchStats);
+        Log.i(LOG_TAG, "launch to audio: " + mLaunchStats + "; receiver starts: "
+                + mStartStats + "; output switches: "
+                + mOutputSwitchStats + "; band switches: " + mBandSwitchStats);
+        setMonitoring(false);
+        mMonitorHandler.removeCallbacks(mPtySeekTimeout);
         unregisterReceiver(mHeadsetReceiver);
-        unregisterReceiverCallbacks();
-        updateReceiverState(false);
+        stopRadio();
+        mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "destroy", new Runnable() {
+            public void run() {
+                unregisterReceiverCallbacks();
+                releasePlayer();
+                saveRdsCache();
+            }
+        });
+        mScheduler.quit();
         super.onDestroy();
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && intent.hasExtra(EXTRA_LAUNCH_TIME))
+            onLaunch(intent.getLongExtra(EXTRA_LAUNCH_TIME, 0));
         return Service.START_STICKY;
     }
 
+    /**
+     * The app has been launched. Start tracing, and start the radio with
+     * the last session right away if fast start is enabled, instead of
+     * waiting until the activity has connected and loaded its state.
+     *
+     * @param launchTime uptime in ms when the app was launched
+     */
+    private void onLaunch(long launchTime) {
+        if (mStates.getState() != ReceiverStateMachine.STATE_IDLE)
+            return;
+
+        mStartupTrace.begin(launchTime);
+        mStartupTrace.mark("service created", mCreateTime);
+        if (!mFastStartEnabled || !mHeadsetConnected)
+            return;
+
+        // the same state the activity starts the radio with
+        mJournal.loadAsync(new StationJournal.LoadCallback() {
+            public void onLoaded(final StationJournal.State state) {
+                if (state == null || state.band < 0)
+                    return;
+                mMonitorHandler.post(new Runnable() {
+                    public void run() {
+                        warmStart(state);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Start the radio with the last session, unless it has been started
+     * in the meantime
+     *
+     * @param state state loaded from the station journal
+     */
+    private void warmStart(StationJournal.State state) {
+        if (mStates.getState() != ReceiverStateMachine.STATE_IDLE || !mHeadsetConnected)
+            return;
+
+        mStartupTrace.mark("warm start", SystemClock.uptimeMillis());
+        boolean speaker = state.output > 0
+                && getResources().getBoolean(R.bool.speaker_supported);
+        startRadio(state.band, state.frequency, speaker ? AUDIO_SPEAKER : AUDIO_DEFAULT);
+    }
+
+    /**
+     * Record a stage of the running start trace. Stages after the audio
+     * started are ignored.
+     *
+     * @param stage stage name
+     */
+    public void markStartupStage(String stage) {
+        mStartupTrace.mark(stage, SystemClock.uptimeMillis());
+    }
+
     @Override
     public IBinder onBind(Intent arg0) {
         mHandler = new Handler();
+        mDispatcher.setTarget(mHandler, mCallbacks);
         return mBinder;
     }
 
     @Override
     public void onRebind(Intent arg0) {
         mHandler = new Handler();
+        mDispatcher.setTarget(mHandler, mCallbacks);
     }
 
     @Override
     public boolean onUnbind(Intent arg0) {
-        unregisterReceiverCallbacks();
+        suspendCallbacks();
         mHandler = null;
+        mDispatcher.setTarget(null, mCallbacks);
         return true;
     }
 
-    private void tryPost(Runnable run) {
-        if (mHandler != null && mCallbacks != null) {
-            mHandler.post(run);
-        }
-    }
-
     private void registerReceiverCallbacks() {
         if (mCallbacksEnabled == true)
             return;
 
-        mReceiverScanListener = new com.stericsson.hardware.fm.FmReceiver.OnScanListener() {
-            public void onFullScan(int[] frequency, int[] signalStrength, boolean aborted) {
-                // not implemented because full scan is never used
+        mReceiverListener = new FmReceiverBackend.Listener() {
+            public void onFullScan(final int[] frequency, final int[] signalStrength,
+                    final boolean aborted) {
+                Log.i(LOG_TAG, "full scan finished, aborted: " + aborted);
+                mStates.transition(ReceiverStateMachine.STATE_SCANNING,
+                        ReceiverStateMachine.STATE_STARTED);
+                mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "full scan result",
+                        new Runnable() {
+                    public void run() {
+                        finishFullScan(frequency, signalStrength, aborted);
+                    }
+                });
             }
 
-            public void onScan(int tunedFrequency, int signalStrength,
-                    int scanDirection, boolean aborted) {
-                updateFrequency(tunedFrequency, true);
+            public void onScan(final int tunedFrequency, final int signalStrength,
+                    int scanDirection, final boolean aborted) {
+                // intermediate stops of a full scan are collected, but
+                // don't retune
+                if (mFullScanActive) {
+                    mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "full scan progress",
+                            new Runnable() {
+                        public void run() {
+                            if (!mFullScanActive)
+                                return;
+                            mStationTable.put(tunedFrequency, signalStrength);
+                            mKnownStations.put(tunedFrequency, signalStrength);
+                            postFullScanProgress(false);
+                        }
+                    });
+                    return;
+                }
+
+                mStates.transition(ReceiverStateMachine.STATE_SCANNING,
+                        ReceiverStateMachine.STATE_STARTED);
+                if (mSamplingClients > 0) {
+                    mSignalSampler.add(SystemClock.elapsedRealtime(), tunedFrequency,
+                            signalStrength);
+                }
+
+                final int serial = mSeekSerial;
+                final long seekTime = System.nanoTime() - mSeekStartTime;
+                mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "seek result",
+                        new Runnable() {
+                    public void run() {
+                        if (!aborted)
+                            mKnownStations.put(tunedFrequency, signalStrength);
+
+                        // a newer request has replaced the seek
+                        synchronized (mTuneLock) {
+                            if (serial != mTuneSerial)
+                                return;
+                        }
+                        mHardwareSeekStats.record(seekTime);
+                        if (isStarted())
+                            updateFrequency(tunedFrequency, true);
+                        finishTuning(serial);
+                    }
+                });
             }
-        };
 
-        mReceiverRdsDataFoundListener = new com.stericsson.hardware.fm.FmReceiver.OnRDSDataFoundListener() {
             // Receives the current frequency's RDS Data
-            public void onRDSDataFound(final Bundle rdsData, int frequency) {
+            public void onRdsDataFound(RdsData rdsData, int frequency) {
                 if (!isStarted() || frequency != mCurrentFrequency)
                     return;
 
-                // notify activity
-                tryPost(new Runnable() {
-                    public void run() {
-                        mCallbacks.onRdsDataAvailable(rdsData);
+                // most groups repeat known data, only pass on changes
+                int changed;
+                String psn;
+                boolean ptyMismatch = false;
+                synchronized (mRdsState) {
+                    if (mRdsState.getFrequency() != frequency)
+                        return;
+
+                    if (frequency == mAfPendingFrequency && rdsData.has(RdsData.FIELD_PI))
+                        mAfLivePi = rdsData.pi;
+
+                    // the first live program type tells whether a PTY seek
+                    // landed on a matching station
+                    if (mPtySeekPty > 0 && mPtySeekFrequency == frequency
+                            && rdsData.has(RdsData.FIELD_PTY)) {
+                        ptyMismatch = rdsData.pty != mPtySeekPty;
+                        if (!ptyMismatch)
+                            mPtySeekPty = 0;
                     }
-                });
+
+                    changed = mRdsState.merge(rdsData);
+                    if ((changed & RdsData.FIELD_PTY) != 0 || ptyMismatch)
+                        mPtyIndex.put(frequency, mRdsState.getPty());
+                    if ((changed & (RdsData.FIELD_AF | RdsData.FIELD_PI)) != 0
+                            && mRdsState.has(RdsData.FIELD_PI) && mRdsState.getAf() != null)
+                        mAfTable.put(mRdsState.getPi(), mRdsState.getAf());
+                    if (changed == 0 && !ptyMismatch)
+                        return;
+
+                    // notify activity
+                    if (changed != 0)
+                        mDispatcher.postRdsData(mRdsState, changed);
+                    if ((changed & ~RdsData.FIELD_AF) != 0)
+                        mRdsCache.put(mFmBand.getBand(), mRdsState);
+                    psn = mRdsState.getPsn();
+                }
 
                 // set station name in notification
-                if (rdsData.containsKey("PSN")) {
-                    setNotification(rdsData.getString("PSN").trim(), mCurrentFrequency);
+                if ((changed & RdsData.FIELD_PSN) != 0) {
+                    setNotification(psn, mCurrentFrequency);
+                }
+
+                if (ptyMismatch) {
+                    Log.i(LOG_TAG, "program type changed, continuing seek");
+                    continuePtySeek();
                 }
-                
             }
-        };
 
-        mReceiverStartedListener = new com.stericsson.hardware.fm.FmReceiver.OnStartedListener() {
             public void onStarted() {
-                updateAudioState(true);
-                if (mCurrentFrequency <= 0) {
-                    mCurrentFrequency = mFmBand.getDefaultFrequency();
-                }
-                updatePlayState(true);
-                tryPost(new Runnable() {
+                mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "started", new Runnable() {
                     public void run() {
-                        mCallbacks.onReceiverStateChanged(true);
+                        updateAudioState(true);
+                        if (mCurrentFrequency <= 0) {
+                            mCurrentFrequency = mFmBand.getDefaultFrequency();
+                        }
+                        updatePlayState(true);
+                        mDispatcher.postReceiverState(true);
+                        updateFrequency(mCurrentFrequency, true);
+                        startForeground(PLAY_NOTIFICATION, mNotificationUpdater.flush());
                     }
                 });
-                updateFrequency(mCurrentFrequency, true);
-                startForeground(PLAY_NOTIFICATION, mNotificationInstance);
             }
         };
 
-        mFmReceiver.addOnScanListener(mReceiverScanListener);
-        mFmReceiver.addOnStartedListener(mReceiverStartedListener);
-        mFmReceiver.addOnRDSDataFoundListener(mReceiverRdsDataFoundListener);
+        mFmReceiver.setListener(mReceiverListener);
+        // a seek may have ended while nobody was listening
+        if (mStates.getState() == ReceiverStateMachine.STATE_SCANNING
+                && mFmReceiver.getState() != FmReceiverBackend.STATE_SCANNING)
+            mStates.transition(ReceiverStateMachine.STATE_SCANNING,
+                    ReceiverStateMachine.STATE_STARTED);
 
         mCallbacksEnabled = true;
     }
@@ -261,9 +706,16 @@ public class FmRadioService extends Service
         if (mCallbacksEnabled == false)
             return;
 
-        mFmReceiver.removeOnScanListener(mReceiverScanListener);
-        mFmReceiver.removeOnStartedListener(mReceiverStartedListener);
-        mFmReceiver.removeOnRDSDataFoundListener(mReceiverRdsDataFoundListener);
+        // the result of a running full scan can't be delivered anymore
+        if (mFullScanActive) {
+            mFullScanActive = false;
+            mNotificationUpdater.setThrottled(false);
+            mFmReceiver.stopScan();
+            mStates.transition(ReceiverStateMachine.STATE_SCANNING,
+                    ReceiverStateMachine.STATE_STARTED);
+        }
+
+        mFmReceiver.setListener(null);
 
         mCallbacksEnabled = false;
     }
@@ -276,94 +728,328 @@ public class FmRadioService extends Service
     private void updateAudioState(boolean state) {
 
         if (state == true) {
-            // try digital audio playback first
-            try {
-                mMediaPlayer = new MediaPlayer();
-                mMediaPlayer.setDataSource("fmradio://rx");
-                mMediaPlayer.prepare();
-                mMediaPlayer.start();
-            } catch (Exception e) {
-                // fall back to legacy audio routing
-                mMediaPlayer = null;
-                AudioSystem.setForceUse(AudioSystem.FOR_MEDIA, getAudioOutput());
-                AudioSystem.setDeviceConnectionState(AudioSystem.DEVICE_OUT_FM, AudioSystem.DEVICE_STATE_UNAVAILABLE, "");
-                AudioSystem.setDeviceConnectionState(AudioSystem.DEVICE_OUT_FM, AudioSystem.DEVICE_STATE_AVAILABLE, "");
-            }
+            // digital audio playback unless it's known not to work
+            preparePlayer();
+            if (mAudioRouting == ROUTING_LEGACY)
+                startLegacyAudio();
+            else if (mPlayerPrepared)
+                startDigitalAudio();
+            else
+                mPlayWhenPrepared = true;
         } else {
-            if (mMediaPlayer != null) {
-                mMediaPlayer.release();
-                mMediaPlayer = null;
-            }
+            // the player stays prepared for the next start
+            pausePlayer();
             AudioSystem.setForceUse(AudioSystem.FOR_MEDIA, AudioSystem.FORCE_NONE);
             AudioSystem.setDeviceConnectionState(AudioSystem.DEVICE_OUT_FM, AudioSystem.DEVICE_STATE_UNAVAILABLE, "");
         }
     }
 
+    /**
+     * Start preparing the digital audio player, unless there is one
+     * already or legacy routing is known to be needed. Preparation runs
+     * asynchronously, in parallel with the receiver start.
+     */
+    private void preparePlayer() {
+        if (mMediaPlayer != null || mAudioRouting == ROUTING_LEGACY)
+            return;
+
+        final MediaPlayer player = new MediaPlayer();
+        player.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
+            public void onPrepared(MediaPlayer mp) {
+                mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "audio prepared",
+                        new Runnable() {
+                    public void run() {
+                        onPlayerPrepared(player);
+                    }
+                });
+            }
+        });
+        player.setOnErrorListener(new MediaPlayer.OnErrorListener() {
+            public boolean onError(MediaPlayer mp, int what, int extra) {
+                Log.e(LOG_TAG, "audio player error " + what + ", " + extra);
+                mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "audio error",
+                        new Runnable() {
+                    public void run() {
+                        onPlayerFailed(player);
+                    }
+                });
+                return true;
+            }
+        });
+
+        try {
+            player.setDataSource("fmradio://rx");
+            player.prepareAsync();
+        } catch (Exception e) {
+            Log.i(LOG_TAG, "digital audio not available: " + e.toString());
+            player.release();
+            // tried again once the receiver is running
+            if (mReceiverRunning)
+                setAudioRouting(ROUTING_LEGACY);
+            return;
+        }
+        mMediaPlayer = player;
+        mPlayerPrepared = false;
+        mPreparedWhileRunning = mReceiverRunning;
+    }
+
+    private void onPlayerPrepared(MediaPlayer player) {
+        if (player != mMediaPlayer)
+            return;
+
+        mPlayerPrepared = true;
+        setAudioRouting(ROUTING_DIGITAL);
+        // a seek queued right behind the start may hold the receiver
+        int state = mStates.getState();
+        if (mPlayWhenPrepared && (state == ReceiverStateMachine.STATE_STARTED
+                || state == ReceiverStateMachine.STATE_SCANNING)) {
+            mPlayWhenPrepared = false;
+            startDigitalAudio();
+        }
+    }
+
+    private void onPlayerFailed(MediaPlayer player) {
+        if (player != mMediaPlayer)
+            return;
+
+        boolean waiting = mPlayWhenPrepared;
+        boolean prepared = mPlayerPrepared;
+        releasePlayer();
+
+        // a player that worked broke down, start over with a new one
+        if (prepared) {
+            if (isStarted()) {
+                preparePlayer();
+                mPlayWhenPrepared = true;
+            }
+            return;
+        }
+
+        // the receiver output may only be available once the receiver
+        // is up, try again before giving up on digital audio
+        if (!mPreparedWhileRunning) {
+            if (mReceiverRunning) {
+                preparePlayer();
+                if (mAudioRouting == ROUTING_LEGACY) {
+                    if (waiting)
+                        startLegacyAudio();
+                } else {
+                    mPlayWhenPrepared = waiting;
+                }
+            }
+            return;
+        }
+
+        // preparation failed, digital audio doesn't work on this device
+        setAudioRouting(ROUTING_LEGACY);
+        if (waiting)
+            startLegacyAudio();
+    }
+
+    private void releasePlayer() {
+        if (mMediaPlayer != null) {
+            mMediaPlayer.release();
+            mMediaPlayer = null;
+        }
+        mPlayerPrepared = false;
+        mPlayerPlaying = false;
+        mPlayWhenPrepared = false;
+    }
+
+    private void pausePlayer() {
+        mPlayWhenPrepared = false;
+        if (mPlayerPlaying) {
+            mMediaPlayer.pause();
+            mPlayerPlaying = false;
+        }
+    }
+
+    private void startDigitalAudio() {
+        AudioSystem.setForceUse(AudioSystem.FOR_MEDIA, getAudioOutput());
+        float volume = mAudioMuted ? 0 : 1;
+        mMediaPlayer.setVolume(volume, volume);
+        mMediaPlayer.start();
+        mPlayerPlaying = true;
+        recordAudioStart();
+    }
+
+    private void startLegacyAudio() {
+        AudioSystem.setForceUse(AudioSystem.FOR_MEDIA, getAudioOutput());
+        AudioSystem.setDeviceConnectionState(AudioSystem.DEVICE_OUT_FM, AudioSystem.DEVICE_STATE_UNAVAILABLE, "");
+        AudioSystem.setDeviceConnectionState(AudioSystem.DEVICE_OUT_FM, AudioSystem.DEVICE_STATE_AVAILABLE, "");
+        recordAudioStart();
+    }
+
+    /**
+     * Silence FM audio without stopping the player or the receiver. The
+     * player keeps running at zero volume; legacy routing disconnects the
+     * FM output, and connects it again if the receiver is still running.
+     *
+     * @param muted whether audio should be silent
+     */
+    private void setAudioMuted(boolean muted) {
+        if (muted == mAudioMuted)
+            return;
+        mAudioMuted = muted;
+
+        if (mPlayerPrepared) {
+            float volume = muted ? 0 : 1;
+            mMediaPlayer.setVolume(volume, volume);
+        }
+        if (mAudioRouting == ROUTING_LEGACY) {
+            AudioSystem.setDeviceConnectionState(AudioSystem.DEVICE_OUT_FM,
+                    AudioSystem.DEVICE_STATE_UNAVAILABLE, "");
+            if (!muted && mReceiverRunning)
+                AudioSystem.setDeviceConnectionState(AudioSystem.DEVICE_OUT_FM,
+                        AudioSystem.DEVICE_STATE_AVAILABLE, "");
+        }
+    }
+
+    /**
+     * Record the time from the receiver start until audio plays
+     */
+    private void recordAudioStart() {
+        if (mAudioStartTime != 0) {
+            mStartStats.record(System.nanoTime() - mAudioStartTime);
+            mAudioStartTime = 0;
+        }
+
+        long launchToAudio = mStartupTrace.finish("audio", SystemClock.uptimeMillis());
+        if (launchToAudio >= 0) {
+            mLaunchStats.record(launchToAudio * 1000000);
+            Log.i(LOG_TAG, "startup: " + mStartupTrace);
+        }
+    }
+
+    /**
+     * Remember which audio routing works on this device, so that later
+     * starts don't have to probe
+     *
+     * @param routing ROUTING_* constant
+     */
+    private void setAudioRouting(int routing) {
+        if (routing == mAudioRouting)
+            return;
+        mAudioRouting = routing;
+        getSharedPreferences(AUDIO_PREFS, MODE_PRIVATE).edit()
+                .putInt(AUDIO_ROUTING, routing)
+                .putString(AUDIO_BUILD, Build.FINGERPRINT).apply();
+    }
+
+    /**
+     * Show a toast from any thread. Posted through the monitor handler,
+     * which exists for the lifetime of the service, so that it works
+     * before a client has bound, e.g. for a warm start.
+     *
+     * @param id string resource id for the message text
+     * @param duration toast duration constant
+     */
+    private void showToast(int id, int duration) {
+        FmUtils.showToast(this, mMonitorHandler, id, duration);
+    }
+
+    /**
+     * Apply the selected output device to running FM audio. Only the
+     * routing changes, the receiver and player keep running.
+     */
+    private void updateAudioRoute() {
+        long start = System.nanoTime();
+        AudioSystem.setForceUse(AudioSystem.FOR_MEDIA, getAudioOutput());
+        // legacy routing only follows the forced device when the FM
+        // output is connected again
+        if (mAudioRouting == ROUTING_LEGACY) {
+            AudioSystem.setDeviceConnectionState(AudioSystem.DEVICE_OUT_FM, AudioSystem.DEVICE_STATE_UNAVAILABLE, "");
+            AudioSystem.setDeviceConnectionState(AudioSystem.DEVICE_OUT_FM, AudioSystem.DEVICE_STATE_AVAILABLE, "");
+        }
+        mOutputSwitchStats.record(System.nanoTime() - start);
+    }
+
     /**
      * Update FM receiver and audio output state
      *
      * @param state requested state
      */
-    private synchronized void updateReceiverState(boolean state) {
-        if (mFmReceiver.getState() == FmReceiver.STATE_IDLE
-                && state == true) {
+    private void updateReceiverState(boolean state) {
+        if (!mReceiverRunning && state == true) {
+            // the start request has moved the state already, unless a stop
+            // was executed in between
+            mStates.moveTo(ReceiverStateMachine.STATE_STARTING);
+            mAudioStartTime = System.nanoTime();
             try {
                 registerReceiverCallbacks();
+                // audio is prepared while the receiver starts up
+                preparePlayer();
+                mStartupTrace.mark("receiver starting", SystemClock.uptimeMillis());
                 mFmReceiver.start(mFmBand);
+                mReceiverRunning = true;
+                mStates.transition(ReceiverStateMachine.STATE_STARTING,
+                        ReceiverStateMachine.STATE_STARTED);
+                mStartupTrace.mark("receiver started", SystemClock.uptimeMillis());
                 updateAudioState(true);
                 if (mCurrentFrequency <= 0) {
                     mCurrentFrequency = mFmBand.getDefaultFrequency();
                 }
                 updatePlayState(true);
-                tryPost(new Runnable() {
-                    public void run() {
-                        mCallbacks.onReceiverStateChanged(true);
-                    }
-                });
+                mDispatcher.postReceiverState(true);
                 updateFrequency(mCurrentFrequency, true);
                 mAudioManager.requestAudioFocus(this, AudioManager.STREAM_MUSIC,
                         AudioManager.AUDIOFOCUS_GAIN);
-                startForeground(PLAY_NOTIFICATION, mNotificationInstance);
+                startForeground(PLAY_NOTIFICATION, mNotificationUpdater.flush());
+                setMonitoring(true);
             } catch (IOException e) {
                 Log.e(LOG_TAG, e.toString());
-                FmUtils.showToast(this, mHandler, R.string.fm_start_error, Toast.LENGTH_LONG);
+                showToast(R.string.fm_start_error, Toast.LENGTH_LONG);
             } catch (IllegalStateException e) {
                 Log.e(LOG_TAG, e.toString());
-                FmUtils.showToast(this, mHandler, R.string.fm_start_error, Toast.LENGTH_LONG);
+                showToast(R.string.fm_start_error, Toast.LENGTH_LONG);
+            } finally {
+                if (!mReceiverRunning)
+                    mStates.transition(ReceiverStateMachine.STATE_STARTING,
+                            ReceiverStateMachine.STATE_IDLE);
             }
-        } else if (mFmReceiver.getState() != FmReceiver.STATE_IDLE
-                && state == false) {
+        } else if (state == false) {
+            mStates.moveTo(ReceiverStateMachine.STATE_STOPPING);
             try {
+                if (!mReceiverRunning)
+                    return;
+                setMonitoring(false);
+                // the process may be killed once playback has stopped
+                mJournal.flush();
                 unregisterReceiverCallbacks();
                 updatePlayState(false);
                 updateAudioState(false);
                 mFmReceiver.reset();
-                tryPost(new Runnable() {
-                    public void run() {
-                        mCallbacks.onReceiverStateChanged(false);
-                    }
-                });
+                mReceiverRunning = false;
+                synchronized (mRdsState) {
+                    mRdsState.reset(0);
+                    mAfPendingFrequency = -1;
+                }
+                saveRdsCache();
+                mDispatcher.postReceiverState(false);
                 mAudioManager.abandonAudioFocus(this);
                 stopForeground(true);
+                mNotificationUpdater.reset();
                 //mNotificationManager.cancel(PLAY_NOTIFICATION);
             } catch (IOException e) {
                 Log.e(LOG_TAG, "Failed to stop FM receiver");
+            } finally {
+                // a start requested in the meantime keeps its state
+                mStates.transition(ReceiverStateMachine.STATE_STOPPING,
+                        ReceiverStateMachine.STATE_IDLE);
             }
-        } else if (mFmReceiver.getState() == FmReceiver.STATE_STARTED) {
+        } else if (mStates.getState() == ReceiverStateMachine.STATE_STARTED) {
             // in case of a hot restart, the onStarted callback is never
             // called, so we need to set the frequency here
             updatePlayState(true);
             if (mCurrentFrequency > 0) {
                 updateFrequency(mCurrentFrequency, true);
             }
-            tryPost(new Runnable() {
-                public void run() {
-                    mCallbacks.onReceiverStateChanged(true);
-                }
-            });
-            startForeground(PLAY_NOTIFICATION, mNotificationInstance);
+            mDispatcher.postReceiverState(true);
+            startForeground(PLAY_NOTIFICATION, mNotificationUpdater.flush());
+            setMonitoring(true);
         } else {
-            Log.i(LOG_TAG, "No action for updateReceiverState: incorrect state - " + mFmReceiver.getState());
+            Log.i(LOG_TAG, "No action for updateReceiverState: incorrect state - "
+                    + ReceiverStateMachine.getName(mStates.getState()));
         }
     }
 
@@ -372,31 +1058,35 @@ public class FmRadioService extends Service
      *
      * @param state requested state
      */
-    private synchronized void updatePlayState(boolean state) {
+    private void updatePlayState(boolean state) {
         if (state == true) {
             try {
                 mFmReceiver.resume();
-                if (mMediaPlayer != null)
-                    mMediaPlayer.start();
+                mStates.transition(ReceiverStateMachine.STATE_PAUSED,
+                        ReceiverStateMachine.STATE_STARTED);
+                if (mPlayerPrepared)
+                    startDigitalAudio();
+                else if (mMediaPlayer != null)
+                    mPlayWhenPrepared = true;
             } catch (IOException e) {
                 Log.e(LOG_TAG, e.toString());
-                FmUtils.showToast(this, mHandler, R.string.resume_error, Toast.LENGTH_LONG);
+                showToast(R.string.resume_error, Toast.LENGTH_LONG);
             } catch (IllegalStateException e) {
                 Log.e(LOG_TAG, e.toString());
-                FmUtils.showToast(this, mHandler, R.string.resume_error, Toast.LENGTH_LONG);
+                showToast(R.string.resume_error, Toast.LENGTH_LONG);
             }
         } else {
             try {
-                if (mMediaPlayer != null)
-                    mMediaPlayer.pause();
+                pausePlayer();
                 mFmReceiver.pause();
+                mStates.moveTo(ReceiverStateMachine.STATE_PAUSED);
                 //mNotificationManager.cancel(PLAY_NOTIFICATION);
             } catch (IOException e) {
                 Log.e(LOG_TAG, e.toString());
-                FmUtils.showToast(this, mHandler, R.string.pause_error, Toast.LENGTH_LONG);
+                showToast(R.string.pause_error, Toast.LENGTH_LONG);
             } catch (IllegalStateException e) {
                 Log.e(LOG_TAG, e.toString());
-                FmUtils.showToast(this, mHandler, R.string.pause_error, Toast.LENGTH_LONG);
+                showToast(R.string.pause_error, Toast.LENGTH_LONG);
             }
         }
     }
@@ -408,7 +1098,7 @@ public class FmRadioService extends Service
      * @param setFrequency whether frequency should be set on the receiver
      *
      */
-    private synchronized boolean updateFrequency(final int frequency,
+    private boolean updateFrequency(final int frequency,
             boolean setFrequency) {
         mCurrentFrequency = frequency;
 
@@ -419,103 +1109,684 @@ public class FmRadioService extends Service
                 mFmReceiver.setFrequency(frequency);
         } catch (IllegalStateException e) {
             Log.e(LOG_TAG, e.toString());
-            FmUtils.showToast(this, mHandler, R.string.seek_error, Toast.LENGTH_LONG);
+            showToast(R.string.seek_error, Toast.LENGTH_LONG);
             return false;
         } catch (IllegalArgumentException e) {
             Log.e(LOG_TAG, e.toString());
-            FmUtils.showToast(this, mHandler, R.string.seek_error, Toast.LENGTH_LONG);
+            showToast(R.string.seek_error, Toast.LENGTH_LONG);
             return false;
         } catch (IOException e) {
             Log.e(LOG_TAG, e.toString());
-            FmUtils.showToast(this, mHandler, R.string.seek_error, Toast.LENGTH_LONG);
+            showToast(R.string.seek_error, Toast.LENGTH_LONG);
             return false;
         }
 
-        setNotification(null, mCurrentFrequency);
+        // keep RDS data if the frequency stays the same, the activity
+        // still needs to get it again
+        String psn = null;
+        synchronized (mRdsState) {
+            mDispatcher.postFrequency(frequency, mFmBand.getChannelOffset());
+            if (mRdsState.getFrequency() != frequency) {
+                mRdsState.reset(frequency);
 
-        final int channelOffset = mFmBand.getChannelOffset();
-        tryPost(new Runnable() {
-            public void run() {
-                mCallbacks.onFrequencyChanged(frequency, channelOffset);
+                // show last known identity until live data arrives
+                if (mRdsCache.get(mFmBand.getBand(), frequency, mCachedRdsData)) {
+                    mDispatcher.postRdsData(mRdsState, mRdsState.merge(mCachedRdsData));
+                    psn = mRdsState.getPsn();
+                }
+            } else if (mRdsState.getFields() != 0) {
+                mDispatcher.postRdsData(mRdsState, mRdsState.getFields());
+                psn = mRdsState.getPsn();
             }
-        });
+        }
+
+        setNotification(psn, mCurrentFrequency);
+        // the journal coalesces tune events, stepping through the band is
+        // written once it stops
+        mJournal.tuned(mCurrentFrequency);
 
         return true;
     }
 
     /**
-     * Prepare notification builder with appropriate settings
-     *
+     * Load persisted RDS cache
      */
-    private void prepareNotification() {
-        // create notification builder
-        mRadioNotification = new Notification.Builder(this)
-                .setSmallIcon(R.drawable.stat_notify_fm)
-                .setOngoing(true)
-                .setWhen(0);
+    private void loadRdsCache() {
+        File file = new File(getFilesDir(), RDS_CACHE_FILE);
+        if (!file.exists())
+            return;
 
-        // switch to activity when notification is clicked
-        PendingIntent resultIntent = PendingIntent.getActivity(this, 0,
-                new Intent(this, FmRadio.class), 0);
-        mRadioNotification.setContentIntent(resultIntent);
+        InputStream in = null;
+        try {
+            in = new BufferedInputStream(new FileInputStream(file));
+            mRdsCache.read(in);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed to load RDS cache: " + e.toString());
+            mRdsCache.clear();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                }
+            }
+        }
     }
 
     /**
-     * Set notification according to frequency and PSN
-     *
-     * @param stationName PSN string, or null
-     * @param frequency frequency in KHz
+     * Persist RDS cache. The file is replaced atomically, so a failed
+     * write keeps the previous contents.
      */
-    private void setNotification(String stationName, int frequency) {
-        if (isStarted() == false)
-            return;
+    private void saveRdsCache() {
+        File file = new File(getFilesDir(), RDS_CACHE_FILE);
+        File tmp = new File(getFilesDir(), RDS_CACHE_FILE + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(tmp));
+            mRdsCache.write(out);
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file))
+                throw new IOException("rename failed");
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed to save RDS cache: " + e.toString());
+            tmp.delete();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Execute a tuning request
+     *
+     * @param mode frequency change mode
+     * @param frequency target frequency in KHz, start frequency for seeks
+     * @param serial request serial
+     */
+    private void executeTuning(int mode, int frequency, int serial) {
+        synchronized (mTuneLock) {
+            // stop or scan requested after this command was submitted
+            if (serial != mTuneSerial)
+                return;
+        }
+
+        if (!isStarted()) {
+            Log.e(LOG_TAG, "radio not ready");
+            finishTuning(serial);
+            return;
+        }
+
+        cancelScan();
+        finishSweep();
+
+        switch (mode) {
+        case SEEK_SCANUP:
+        case SEEK_SCANDOWN:
+            long start = System.nanoTime();
+            if (mFastSeekEnabled) {
+                int index = nextKnownStation(frequency, mode == SEEK_SCANUP);
+                if (index >= 0) {
+                    updateFrequency(mKnownStations.getFrequency(index), true);
+                    mFastSeekStats.record(System.nanoTime() - start);
+                    finishTuning(serial);
+                    break;
+                }
+            }
+
+            // nothing known in this direction, let the receiver search.
+            // Start from the latest requested frequency, the request is
+            // finished when the seek result arrives.
+            if (frequency != mCurrentFrequency)
+                updateFrequency(frequency, true);
+            mSeekSerial = serial;
+            mSeekStartTime = start;
+            mStates.moveTo(ReceiverStateMachine.STATE_SCANNING);
+            if (mode == SEEK_SCANUP)
+                mFmReceiver.scanUp();
+            else
+                mFmReceiver.scanDown();
+            break;
+        default:
+            updateFrequency(frequency, true);
+            finishTuning(serial);
+            break;
+        }
+    }
+
+    /**
+     * Mark tuning request as executed
+     *
+     * @param serial request serial
+     */
+    private void finishTuning(int serial) {
+        synchronized (mTuneLock) {
+            if (serial - mTunedSerial > 0)
+                mTunedSerial = serial;
+        }
+    }
+
+    /**
+     * Make pending tuning requests and running seeks obsolete
+     */
+    private void invalidateTuning() {
+        synchronized (mTuneLock) {
+            mTunedSerial = ++mTuneSerial;
+        }
+    }
+
+    /**
+     * Find the nearest known station in a direction whose last measured
+     * signal strength is good enough to seek to. Stations from the RDS
+     * cache are only used once they have been measured.
+     *
+     * @param frequency frequency in KHz to start from
+     * @param up direction
+     * @return index in mKnownStations, or -1 if there is none
+     */
+    private int nextKnownStation(int frequency, boolean up) {
+        int index = up ? mKnownStations.higher(frequency) : mKnownStations.lower(frequency);
+        while (index >= 0 && index < mKnownStations.size()
+                && mKnownStations.getSignalStrength(index) < mFastSeekThreshold)
+            index = up ? index + 1 : index - 1;
+        return index < mKnownStations.size() ? index : -1;
+    }
+
+    /**
+     * Stop a running seek or full scan, so that the receiver accepts
+     * new commands
+     */
+    private void cancelScan() {
+        // a scan may have been paused, otherwise nothing can be running
+        int state = mStates.getState();
+        if (state != ReceiverStateMachine.STATE_SCANNING
+                && state != ReceiverStateMachine.STATE_PAUSED)
+            return;
+        // the scan may just have ended on its own
+        if (mFmReceiver.getState() == FmReceiverBackend.STATE_SCANNING)
+            mFmReceiver.stopScan();
+        mStates.transition(ReceiverStateMachine.STATE_SCANNING,
+                ReceiverStateMachine.STATE_STARTED);
+    }
+
+    /**
+     * Merge final full scan results and return to the previous frequency
+     *
+     * @param frequency frequencies found by the receiver
+     * @param signalStrength signal strengths of found frequencies
+     * @param aborted whether the scan was stopped before the end of the band
+     */
+    private void finishFullScan(int[] frequency, int[] signalStrength, boolean aborted) {
+        if (!mFullScanActive)
+            return;
 
-        int offset = mFmBand.getChannelOffset();
-        String freqFormatted = FmUtils.formatFrequency(offset, frequency);
+        mFullScanActive = false;
+        mNotificationUpdater.setThrottled(false);
+        mStationTable.putAll(frequency, signalStrength);
+        mKnownStations.putAll(frequency, signalStrength);
+        // a complete sweep tells which stations are gone
+        if (!aborted) {
+            mKnownStations.set(mStationTable);
+            mPtyIndex.retainAll(mStationTable);
+        }
+        postFullScanProgress(true);
+
+        // the receiver is left at the end of the band after a sweep
+        if (mCurrentFrequency > 0)
+            updateFrequency(mCurrentFrequency, true);
+    }
+
+    /**
+     * Send a snapshot of the full scan station table to the activity
+     *
+     * @param finished whether the scan has ended
+     */
+    private void postFullScanProgress(boolean finished) {
+        mDispatcher.postFullScanProgress(mStationTable, finished);
+    }
+
+    /**
+     * Start or stop periodic reception checks for a started or stopped
+     * receiver
+     *
+     * @param active whether the receiver is started
+     */
+    private void setMonitoring(final boolean active) {
+        // the handler is only used on the main thread
+        mMonitorHandler.post(new Runnable() {
+            public void run() {
+                mReceiverActive = active;
+                updateMonitoring();
+            }
+        });
+    }
+
+    /**
+     * Start or stop periodic reception checks, depending on whether they
+     * are needed. Must be called on the main thread.
+     */
+    private void updateMonitoring() {
+        boolean enabled = mReceiverActive && (mAfEnabled || mSamplingClients > 0);
+        if (enabled == mMonitoring)
+            return;
+        mMonitoring = enabled;
+        if (enabled)
+            mMonitorHandler.postDelayed(mMonitorTick, AF_CHECK_INTERVAL);
+        else
+            mMonitorHandler.removeCallbacks(mMonitorTick);
+    }
+
+    /**
+     * Measure reception of the current station, record it if signal
+     * sampling is active, and switch to the best alternative frequency
+     * of the program if it stays weak
+     */
+    private void checkReception() {
+        if (mFullScanActive || mSweepActive
+                || mStates.getState() != ReceiverStateMachine.STATE_STARTED)
+            return;
+        // don't interfere with tuning requests
+        synchronized (mTuneLock) {
+            if (mTunedSerial != mTuneSerial)
+                return;
+        }
+
+        int frequency = mCurrentFrequency;
+        int strength;
+        try {
+            strength = mFmReceiver.getSignalStrength();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed to get signal strength: " + e.toString());
+            return;
+        }
+        if (mSamplingClients > 0)
+            mSignalSampler.add(SystemClock.elapsedRealtime(), frequency, strength);
+        if (mKnownStations.indexOf(frequency) >= 0)
+            mKnownStations.put(frequency, strength);
+
+        if (checkAfSwitch(frequency))
+            return;
+        if (!mAfEnabled || strength >= mAfThreshold) {
+            mAfWeakChecks = 0;
+            return;
+        }
+        if (++mAfWeakChecks < AF_WEAK_CHECKS)
+            return;
+        mAfWeakChecks = 0;
+
+        int pi;
+        synchronized (mRdsState) {
+            if (mRdsState.getFrequency() != frequency || !mRdsState.has(RdsData.FIELD_PI))
+                return;
+            pi = mRdsState.getPi();
+        }
+        int af = mAfTable.pick(pi, frequency, mFmBand, mKnownStations,
+                SystemClock.elapsedRealtime());
+        if (af < 0)
+            return;
+
+        switchAf(pi, frequency, strength, af);
+    }
+
+    /**
+     * Retune to an alternative frequency, and go back if reception there
+     * is not better. The switch stays pending until the PI code on the new
+     * frequency confirms the program.
+     *
+     * @param pi PI code of the program
+     * @param frequency current frequency in KHz
+     * @param strength signal strength on the current frequency
+     * @param af alternative frequency in KHz
+     */
+    private void switchAf(int pi, int frequency, int strength, int af) {
+        // PI codes received from now on belong to the new frequency
+        synchronized (mRdsState) {
+            mAfPendingFrequency = af;
+            mAfPendingPi = pi;
+            mAfPendingFrom = frequency;
+            mAfLivePi = -1;
+        }
+
+        long start = System.nanoTime();
+        if (!updateFrequency(af, true)) {
+            synchronized (mRdsState) {
+                mAfPendingFrequency = -1;
+            }
+            return;
+        }
+        long latency = System.nanoTime() - start;
+
+        int afStrength;
+        try {
+            afStrength = mFmReceiver.getSignalStrength();
+        } catch (IOException e) {
+            afStrength = 0;
+        }
+        mKnownStations.put(af, afStrength);
+
+        String log = "AF switch PI " + Integer.toHexString(pi) + ": " + frequency + " -> " + af
+                + " KHz, strength " + strength + " -> " + afStrength + ", "
+                + latency / 1000 + " us";
+        if (afStrength <= strength) {
+            Log.i(LOG_TAG, log + ", reverted");
+            revertAf(af, frequency);
+            return;
+        }
+
+        Log.i(LOG_TAG, log + ", waiting for PI");
+        synchronized (mRdsState) {
+            mAfPendingDeadline = SystemClock.elapsedRealtime() + AF_PI_TIMEOUT;
+            mAfPendingLatency = latency;
+        }
+    }
+
+    /**
+     * Confirm a pending AF switch once the PI code on the new frequency
+     * has been received, or go back if it doesn't match or doesn't arrive
+     * in time
+     *
+     * @param frequency current frequency in KHz
+     * @return whether the switch is still pending or was reverted
+     */
+    private boolean checkAfSwitch(int frequency) {
+        int pi;
+        int from;
+        long latency;
+        synchronized (mRdsState) {
+            if (mAfPendingFrequency < 0)
+                return false;
+            // tuned somewhere else in the meantime
+            if (mAfPendingFrequency != frequency) {
+                mAfPendingFrequency = -1;
+                return false;
+            }
+            pi = mAfLivePi;
+            if (pi < 0 && SystemClock.elapsedRealtime() < mAfPendingDeadline)
+                return true;
+            if (pi == mAfPendingPi) {
+                mAfPendingFrequency = -1;
+                latency = mAfPendingLatency;
+                from = -1;
+            } else {
+                latency = 0;
+                from = mAfPendingFrom;
+            }
+        }
+
+        if (from < 0) {
+            Log.i(LOG_TAG, "AF switch to " + frequency + " KHz confirmed");
+            mAfTable.accept(frequency);
+            mAfSwitchStats.record(latency);
+            return false;
+        }
+
+        Log.i(LOG_TAG, "AF switch to " + frequency + " KHz reverted, PI "
+                + (pi < 0 ? "missing" : Integer.toHexString(pi)));
+        revertAf(frequency, from);
+        return true;
+    }
+
+    /**
+     * Go back from an alternative frequency that didn't work out, and
+     * don't try it again for a while
+     *
+     * @param af alternative frequency in KHz
+     * @param frequency frequency to go back to in KHz
+     */
+    private void revertAf(int af, int frequency) {
+        synchronized (mRdsState) {
+            mAfPendingFrequency = -1;
+        }
+        mAfTable.reject(af, SystemClock.elapsedRealtime());
+        updateFrequency(frequency, true);
+    }
+
+    /**
+     * Prepare notification builder with appropriate settings
+     *
+     */
+    private void prepareNotification() {
+        // create notification builder
+        mRadioNotification = new Notification.Builder(this)
+                .setSmallIcon(R.drawable.stat_notify_fm)
+                .setOngoing(true)
+                .setWhen(0);
+
+        // switch to activity when notification is clicked
+        PendingIntent resultIntent = PendingIntent.getActivity(this, 0,
+                new Intent(this, FmRadio.class), 0);
+        mRadioNotification.setContentIntent(resultIntent);
+
+        mNotificationUpdater = new NotificationUpdater(new Handler(),
+                mNotificationManager, mRadioNotification, PLAY_NOTIFICATION);
+    }
+
+    /**
+     * Set notification according to frequency and PSN
+     *
+     * @param stationName PSN string, or null
+     * @param frequency frequency in KHz
+     */
+    private void setNotification(String stationName, int frequency) {
+        if (isStarted() == false)
+            return;
+
+        String freqFormatted = mFrequencyFormatter.formatWithUnit(frequency);
 
         if (stationName != null && frequency > 0) {
-            mRadioNotification.setContentTitle(stationName)
-                .setContentText(freqFormatted + " MHz");
-            mNotificationInstance = mRadioNotification.getNotification();
-            mNotificationManager.notify(PLAY_NOTIFICATION, mNotificationInstance);
+            mNotificationUpdater.update(stationName, freqFormatted);
         } else if (frequency > 0) {
-            mRadioNotification.setContentTitle(freqFormatted + " MHz")
-                .setContentText("");
-            mNotificationInstance = mRadioNotification.getNotification();
-            mNotificationManager.notify(PLAY_NOTIFICATION, mNotificationInstance);
+            mNotificationUpdater.update(freqFormatted, "");
         }
     }
 
     /**
-     * Start radio with given band and frequency
+     * Start radio with given band and frequency. The command is executed
+     * asynchronously.
      *
-     * @param band FmBand constant
+     * @param band BandPlan.BAND_* constant
      * @param frequency frequency in Khz
      * @param output headset/speaker
-     * @return success
+     * @return whether the command was accepted
      */
-    public boolean startRadio(int band, int frequency, int output) {
+    public boolean startRadio(final int band, final int frequency, final int output) {
         Log.v(LOG_TAG, "startRadio");
 
         if (mHeadsetConnected == false) {
-            FmUtils.showToast(this, mHandler, R.string.no_headset_error,
-                    Toast.LENGTH_LONG);
+            showToast(R.string.no_headset_error, Toast.LENGTH_LONG);
             return false;
         }
 
-        mCurrentFrequency = frequency;
-        mAudioOutput = output;
-        mFmBand = new FmBand(band);
+        // commands submitted from now on are queued behind the start
+        if (!mStates.transition(ReceiverStateMachine.STATE_IDLE,
+                ReceiverStateMachine.STATE_STARTING))
+            mStates.transition(ReceiverStateMachine.STATE_STOPPING,
+                    ReceiverStateMachine.STATE_STARTING);
+
+        return mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "start", new Runnable() {
+            public void run() {
+                boolean outputChanged = output != mAudioOutput;
+                mAudioOutput = output;
+                if (mFmBand == null || mFmBand.getBand() != band) {
+                    if (isStarted()) {
+                        switchBand(band);
+                    } else {
+                        selectBand(band);
+                    }
+                }
+                // without a frequency, resume where the band was left
+                if (frequency > 0)
+                    mCurrentFrequency = frequency;
+                if (outputChanged && isStarted())
+                    updateAudioRoute();
+                // show the last known identity while the receiver starts up
+                if (!isStarted())
+                    showCachedIdentity();
+                updateReceiverState(true);
+            }
+        });
+    }
+
+    /**
+     * Report the current frequency and its cached RDS identity before the
+     * receiver has been started
+     */
+    private void showCachedIdentity() {
+        int frequency = mCurrentFrequency;
+        if (frequency <= 0)
+            return;
+
+        synchronized (mRdsState) {
+            mRdsState.reset(frequency);
+            mDispatcher.postFrequency(frequency, mFmBand.getChannelOffset());
+            if (mRdsCache.get(mFmBand.getBand(), frequency, mCachedRdsData))
+                mDispatcher.postRdsData(mRdsState, mRdsState.merge(mCachedRdsData));
+        }
+    }
+
+    /**
+     * Change the band. A started receiver switches without a restart if
+     * it supports this. Each band resumes at the frequency it was left
+     * at, with the stations known in it. The command is executed
+     * asynchronously.
+     *
+     * @param band BandPlan.BAND_* constant
+     * @return whether the command was accepted
+     */
+    public boolean changeBand(final int band) {
+        Log.v(LOG_TAG, "changeBand");
+
+        invalidateTuning();
+        return mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "band", new Runnable() {
+            public void run() {
+                if (mFmBand != null && mFmBand.getBand() == band)
+                    return;
+                if (isStarted())
+                    switchBand(band);
+                else
+                    selectBand(band);
+            }
+        });
+    }
+
+    /**
+     * Make a band active, keeping the state of the previous one. Sets
+     * the current frequency to where the band was left, or 0.
+     *
+     * @param band BandPlan.BAND_* constant
+     */
+    private void selectBand(int band) {
+        if (mFmBand != null) {
+            int previous = mFmBand.getBand();
+            BandState state = mBandStates[previous];
+            if (state == null)
+                state = mBandStates[previous] = new BandState();
+            state.frequency = mCurrentFrequency;
+            state.stations.set(mStationTable);
+            state.knownStations.set(mKnownStations);
+        }
+
+        mFmBand = mFmReceiver.getBandPlan(band);
+        mFrequencyFormatter = new FrequencyFormatter(mFmBand);
+
+        BandState state = mBandStates[band];
+        if (state != null) {
+            mCurrentFrequency = state.frequency;
+            mStationTable.set(state.stations);
+            mKnownStations.set(state.knownStations);
+        } else {
+            mCurrentFrequency = 0;
+            mStationTable.clear();
+            mKnownStations.clear();
+        }
+        mRdsCache.addFrequencies(band, mKnownStations);
+        mPtyIndex.clear();
+        mRdsCache.addPtys(band, mPtyIndex);
+    }
+
+    /**
+     * Switch a started receiver to another band, without a restart if
+     * the receiver supports it
+     *
+     * @param band BandPlan.BAND_* constant
+     */
+    private void switchBand(int band) {
+        long start = System.nanoTime();
+
+        // scans and sweeps belong to the previous band
+        if (mFullScanActive) {
+            mFmReceiver.stopScan();
+            finishFullScan(null, null, true);
+        }
+        cancelScan();
+        finishSweep();
+
+        selectBand(band);
+        if (mCurrentFrequency <= 0)
+            mCurrentFrequency = mFmBand.getDefaultFrequency();
+
+        boolean switched = false;
+        try {
+            switched = mFmReceiver.setBand(mFmBand);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed to switch band: " + e.toString());
+        } catch (IllegalStateException e) {
+            Log.e(LOG_TAG, "Failed to switch band: " + e.toString());
+        }
+
+        if (switched) {
+            updateFrequency(mCurrentFrequency, true);
+            mBandSwitchStats.record(System.nanoTime() - start);
+            return;
+        }
+
+        // the receiver only takes a band when it is started
+        Log.i(LOG_TAG, "restarting receiver for band " + band);
+        updateReceiverState(false);
         updateReceiverState(true);
-        return true;
     }
 
     /**
-     * Stop radio
+     * Switch the audio output. A running receiver keeps playing, only the
+     * audio routing changes. The command is executed asynchronously.
+     *
+     * @param output headset/speaker
+     * @return whether the command was accepted
+     */
+    public boolean setAudioOutput(final int output) {
+        Log.v(LOG_TAG, "setAudioOutput");
+
+        return mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "audio output",
+                new Runnable() {
+            public void run() {
+                if (output == mAudioOutput)
+                    return;
+                mAudioOutput = output;
+                if (isStarted())
+                    updateAudioRoute();
+            }
+        });
+    }
+
+    /**
+     * Stop radio. The command is executed asynchronously, before any
+     * pending start or tuning commands; pending tuning is dropped.
      */
     public void stopRadio() {
         Log.v(LOG_TAG, "stopRadio");
-        updateReceiverState(false);
+        if (!mStates.accepts(ReceiverStateMachine.COMMAND_STOP))
+            return;
+        mStates.moveTo(ReceiverStateMachine.STATE_STOPPING);
+        invalidateTuning();
+        mScheduler.submit(CommandScheduler.PRIORITY_URGENT, "stop", new Runnable() {
+            public void run() {
+                updateReceiverState(false);
+            }
+        });
     }
 
     /**
@@ -526,66 +1797,388 @@ public class FmRadioService extends Service
     public void setCallbacks(FmRadioService.Callbacks cb) {
         Log.i(LOG_TAG, "setCallbacks");
         mCallbacks = cb;
+        mDispatcher.setTarget(mHandler, cb);
 
-        // notify about current state via callbacks
+        // notify about current state via callbacks. A starting receiver
+        // already has its frequency, and possibly a cached identity.
         int channelOffset = 0;
-        if (isStarted())
-            channelOffset = mFmBand.getChannelOffset();
-        final boolean started = isStarted();
-        final int frequency = mCurrentFrequency;
-        final int offset = channelOffset;
-        tryPost(new Runnable() {
-            public void run() {
-                mCallbacks.onReceiverStateChanged(started);
-                if (frequency > 0 && offset > 0)
-                    mCallbacks.onFrequencyChanged(frequency, offset);
+        BandPlan band = mFmBand;
+        if (mStates.getState() != ReceiverStateMachine.STATE_IDLE && band != null)
+            channelOffset = band.getChannelOffset();
+        boolean started = isStarted();
+        int frequency = mCurrentFrequency;
+        mDispatcher.postReceiverState(started);
+        if (frequency > 0 && channelOffset > 0) {
+            synchronized (mRdsState) {
+                mDispatcher.postFrequency(frequency, channelOffset);
+                if (mRdsState.getFrequency() == frequency && mRdsState.getFields() != 0)
+                    mDispatcher.postRdsData(mRdsState, mRdsState.getFields());
             }
-        });
+        }
     }
 
     /**
-     * Change frequency
+     * Change frequency. The command is executed asynchronously and
+     * replaces any tuning command that has not been executed yet. A
+     * running scan is cancelled.
      *
      * @param mode frequency change mode
      * @param frequency frequency parameter for absolute mode
-     * @return success
+     * @return whether the command was accepted
      */
-    public boolean changeFrequency(int mode, int frequency) {
+    public boolean changeFrequency(final int mode, int frequency) {
         Log.v(LOG_TAG, "changeFrequency");
 
-        if (!isStarted() || !isReady()) {
+        BandPlan band = mFmBand;
+        if (band == null || !mStates.accepts(ReceiverStateMachine.COMMAND_TUNE)) {
             Log.e(LOG_TAG, "radio not ready");
             return false;
         }
 
-        switch (mode) {
-        case SEEK_RESET:
-            // use the band's default frequency
-            frequency = mFmBand.getDefaultFrequency();
-            updateFrequency(frequency, true);
-            break;
-        case SEEK_ABSOLUTE:
-            updateFrequency(frequency, true);
-            break;
-        case SEEK_SCANUP:
-            mFmReceiver.scanUp();
-            break;
-        case SEEK_SCANDOWN:
-            mFmReceiver.scanDown();
-            break;
-        case SEEK_STEPUP:
-            frequency = mCurrentFrequency + mFmBand.getChannelOffset();
-            updateFrequency(frequency, true);
-            break;
-        case SEEK_STEPDOWN:
-            frequency = mCurrentFrequency - mFmBand.getChannelOffset();
-            updateFrequency(frequency, true);
-            break;
-        default:
-            Log.e(LOG_TAG, "illegal seek mode");
+        final int serial;
+        synchronized (mTuneLock) {
+            // steps are relative to the latest requested frequency
+            int base = mTunedSerial != mTuneSerial ? mTargetFrequency : mCurrentFrequency;
+            switch (mode) {
+            case SEEK_RESET:
+                // use the band's default frequency
+                frequency = band.getDefaultFrequency();
+                break;
+            case SEEK_ABSOLUTE:
+                break;
+            case SEEK_SCANUP:
+            case SEEK_SCANDOWN:
+                frequency = base;
+                break;
+            case SEEK_STEPUP:
+                frequency = base + band.getChannelOffset();
+                break;
+            case SEEK_STEPDOWN:
+                frequency = base - band.getChannelOffset();
+                break;
+            default:
+                Log.e(LOG_TAG, "illegal seek mode");
+                return false;
+            }
+            mTargetFrequency = frequency;
+            serial = ++mTuneSerial;
+        }
+
+        final int target = frequency;
+        return mScheduler.submit(CommandScheduler.PRIORITY_TUNE, "tune", new Runnable() {
+            public void run() {
+                executeTuning(mode, target, serial);
+            }
+        });
+    }
+
+    /**
+     * Tune to the next station with a program type, as known from earlier
+     * RDS data. The command is executed asynchronously. If live RDS data
+     * shows that the station now has a different program type, the seek
+     * continues with the next candidate.
+     *
+     * @param pty program type in 1..31
+     * @param up whether to search upwards
+     * @return whether the command was accepted
+     */
+    public boolean seekPty(final int pty, final boolean up) {
+        Log.v(LOG_TAG, "seekPty " + pty);
+
+        if (pty <= 0 || pty >= PtyIndex.PTY_COUNT) {
+            Log.e(LOG_TAG, "illegal program type");
             return false;
         }
-        return true;
+        if (!mStates.accepts(ReceiverStateMachine.COMMAND_TUNE)) {
+            Log.e(LOG_TAG, "radio not ready");
+            return false;
+        }
+
+        final int serial;
+        final int base;
+        synchronized (mTuneLock) {
+            base = mTunedSerial != mTuneSerial ? mTargetFrequency : mCurrentFrequency;
+            mTargetFrequency = base;
+            serial = ++mTuneSerial;
+        }
+
+        return mScheduler.submit(CommandScheduler.PRIORITY_TUNE, "pty seek", new Runnable() {
+            public void run() {
+                executePtySeek(pty, up, base, serial);
+            }
+        });
+    }
+
+    /**
+     * Get number of stations with a known program type
+     *
+     * @param pty program type in 0..31
+     * @return number of stations in the active band
+     */
+    public int getPtyStationCount(int pty) {
+        return mPtyIndex.count(pty);
+    }
+
+    /**
+     * Execute a PTY seek request
+     *
+     * @param pty program type
+     * @param up whether to search upwards
+     * @param frequency start frequency in KHz
+     * @param serial request serial
+     */
+    private void executePtySeek(int pty, boolean up, int frequency, int serial) {
+        synchronized (mTuneLock) {
+            if (serial != mTuneSerial)
+                return;
+        }
+
+        if (!isStarted()) {
+            Log.e(LOG_TAG, "radio not ready");
+            finishTuning(serial);
+            return;
+        }
+
+        int next = mPtyIndex.next(frequency, pty, up);
+        if (next < 0) {
+            showToast(R.string.pty_seek_none, Toast.LENGTH_SHORT);
+            finishTuning(serial);
+            return;
+        }
+
+        cancelScan();
+        finishSweep();
+        synchronized (mRdsState) {
+            mPtySeekPty = pty;
+            mPtySeekUp = up;
+            mPtySeekFrequency = next;
+            mPtySeekSerial = serial;
+            mPtySeekDeadline = SystemClock.uptimeMillis() + PTY_SEEK_TIMEOUT;
+        }
+        mMonitorHandler.removeCallbacks(mPtySeekTimeout);
+        mMonitorHandler.postDelayed(mPtySeekTimeout, PTY_SEEK_TIMEOUT);
+        updateFrequency(next, true);
+        finishTuning(serial);
+    }
+
+    /**
+     * Continue the last PTY seek from the current frequency, unless it
+     * has been replaced by another request in the meantime
+     */
+    private void continuePtySeek() {
+        int pty;
+        boolean up;
+        synchronized (mRdsState) {
+            pty = mPtySeekPty;
+            up = mPtySeekUp;
+            int serial = mPtySeekSerial;
+            mPtySeekPty = 0;
+            synchronized (mTuneLock) {
+                if (serial != mTuneSerial)
+                    return;
+            }
+        }
+        seekPty(pty, up);
+    }
+
+    /**
+     * Start a full band scan. The receiver sweeps the whole band once,
+     * results are reported via Callbacks.onFullScanProgress.
+     *
+     * @return whether the command was accepted
+     */
+    public boolean startFullScan() {
+        Log.v(LOG_TAG, "startFullScan");
+
+        if (!mStates.accepts(ReceiverStateMachine.COMMAND_SCAN)) {
+            Log.e(LOG_TAG, "radio not ready");
+            return false;
+        }
+        invalidateTuning();
+        return mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "full scan", new Runnable() {
+            public void run() {
+                if (!isStarted()) {
+                    Log.e(LOG_TAG, "radio not ready");
+                    return;
+                }
+
+                cancelScan();
+                finishSweep();
+                mStationTable.clear();
+                mFullScanActive = true;
+                mNotificationUpdater.setThrottled(true);
+                mStates.moveTo(ReceiverStateMachine.STATE_SCANNING);
+                mFmReceiver.startFullScan();
+            }
+        });
+    }
+
+    /**
+     * Cancel a running full band scan. Stations found so far are
+     * reported as the final result.
+     */
+    public void stopFullScan() {
+        Log.v(LOG_TAG, "stopFullScan");
+
+        mScheduler.submit(CommandScheduler.PRIORITY_URGENT, "stop full scan", new Runnable() {
+            public void run() {
+                if (mFullScanActive)
+                    mFmReceiver.stopScan();
+            }
+        });
+    }
+
+    /**
+     * Return whether a full band scan is in progress
+     *
+     * @return scan state
+     */
+    public boolean isFullScanActive() {
+        return mFullScanActive;
+    }
+
+    /**
+     * Start a spectrum sweep. The signal strength of every channel of the
+     * band is measured in turn, results are reported via
+     * Callbacks.onSpectrumProgress. Channels known from scans and seeks
+     * are reported right away. The receiver returns to the current
+     * frequency when the sweep ends; a tuning request ends it early.
+     *
+     * @return whether the command was accepted
+     */
+    public boolean startSpectrumSweep() {
+        Log.v(LOG_TAG, "startSpectrumSweep");
+
+        if (!mStates.accepts(ReceiverStateMachine.COMMAND_SCAN)) {
+            Log.e(LOG_TAG, "radio not ready");
+            return false;
+        }
+        invalidateTuning();
+        return mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "spectrum sweep",
+                new Runnable() {
+            public void run() {
+                if (!isStarted()) {
+                    Log.e(LOG_TAG, "radio not ready");
+                    return;
+                }
+
+                // a full scan moves the receiver as well
+                if (mFullScanActive) {
+                    mFmReceiver.stopScan();
+                    finishFullScan(null, null, true);
+                }
+                cancelScan();
+
+                mSpectrum.reset(mFmBand);
+                for (int i = 0; i < mKnownStations.size(); i++) {
+                    mSpectrum.put(mKnownStations.getFrequency(i),
+                            mKnownStations.getSignalStrength(i));
+                }
+                mSweepChannel = 0;
+                mSweepReturnFrequency = mCurrentFrequency;
+                mSweepActive = true;
+                // every channel of the band would be audible otherwise
+                setAudioMuted(true);
+                mDispatcher.postSpectrum(mSpectrum, false);
+                submitSweepStep();
+            }
+        });
+    }
+
+    /**
+     * Cancel a running spectrum sweep. Channels measured so far are
+     * reported as the final result.
+     */
+    public void stopSpectrumSweep() {
+        Log.v(LOG_TAG, "stopSpectrumSweep");
+
+        mScheduler.submit(CommandScheduler.PRIORITY_URGENT, "stop spectrum sweep",
+                new Runnable() {
+            public void run() {
+                finishSweep();
+            }
+        });
+    }
+
+    /**
+     * Return whether a spectrum sweep is in progress
+     *
+     * @return sweep state
+     */
+    public boolean isSpectrumSweepActive() {
+        return mSweepActive;
+    }
+
+    private void submitSweepStep() {
+        mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "spectrum sweep step",
+                new Runnable() {
+            public void run() {
+                sweepStep();
+            }
+        });
+    }
+
+    /**
+     * Measure the next batch of channels of the running sweep
+     */
+    private void sweepStep() {
+        if (!mSweepActive)
+            return;
+        // stopped receiver or pending tuning requests end the sweep
+        if (mStates.getState() != ReceiverStateMachine.STATE_STARTED) {
+            finishSweep();
+            return;
+        }
+        synchronized (mTuneLock) {
+            if (mTunedSerial != mTuneSerial) {
+                finishSweep();
+                return;
+            }
+        }
+
+        int end = Math.min(mSweepChannel + SWEEP_BATCH, mSpectrum.getChannelCount());
+        try {
+            for (; mSweepChannel < end; mSweepChannel++) {
+                int frequency = mSpectrum.getFrequency(mSweepChannel);
+                mFmReceiver.setFrequency(frequency);
+                int strength = mFmReceiver.getSignalStrength();
+                mSpectrum.set(mSweepChannel, strength);
+                if (mKnownStations.indexOf(frequency) >= 0)
+                    mKnownStations.put(frequency, strength);
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Spectrum sweep failed: " + e.toString());
+            finishSweep();
+            return;
+        } catch (IllegalStateException e) {
+            Log.e(LOG_TAG, "Spectrum sweep failed: " + e.toString());
+            finishSweep();
+            return;
+        }
+
+        if (mSweepChannel >= mSpectrum.getChannelCount()) {
+            finishSweep();
+            return;
+        }
+        // partial results are coalesced by the dispatcher
+        mDispatcher.postSpectrum(mSpectrum, false);
+        submitSweepStep();
+    }
+
+    /**
+     * End a running spectrum sweep, report the final result and return
+     * to the frequency the sweep started from
+     */
+    private void finishSweep() {
+        if (!mSweepActive)
+            return;
+
+        mSweepActive = false;
+        cancelScan();
+        mDispatcher.postSpectrum(mSpectrum, true);
+        if (isStarted() && mSweepReturnFrequency > 0)
+            updateFrequency(mSweepReturnFrequency, true);
+        setAudioMuted(false);
     }
 
     /**
@@ -593,7 +2186,12 @@ public class FmRadioService extends Service
      */
     public void suspendCallbacks() {
         Log.v(LOG_TAG, "suspendCallbacks");
-        unregisterReceiverCallbacks();
+        mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "suspend callbacks",
+                new Runnable() {
+            public void run() {
+                unregisterReceiverCallbacks();
+            }
+        });
     }
 
     /**
@@ -601,7 +2199,12 @@ public class FmRadioService extends Service
      */
     public void resumeCallbacks() {
         Log.v(LOG_TAG, "resumeCallbacks");
-        registerReceiverCallbacks();
+        mScheduler.submit(CommandScheduler.PRIORITY_NORMAL, "resume callbacks",
+                new Runnable() {
+            public void run() {
+                registerReceiverCallbacks();
+            }
+        });
     }
 
     /**
@@ -610,9 +2213,7 @@ public class FmRadioService extends Service
      * @return radio state
      */
     public boolean isStarted() {
-        return (mFmReceiver.getState() != FmReceiver.STATE_IDLE)
-                && (mFmReceiver.getState() != FmReceiver.STATE_STARTING)
-                && (mFmBand != null);
+        return mStates.isStarted() && mFmBand != null;
     }
 
     /**
@@ -621,9 +2222,20 @@ public class FmRadioService extends Service
      * @return command state
      */
     public boolean isReady() {
-        int state = mFmReceiver.getState();
-        return state != FmReceiver.STATE_SCANNING
-                && state != FmReceiver.STATE_STARTING;
+        int state = mStates.getState();
+        return state != ReceiverStateMachine.STATE_SCANNING
+                && state != ReceiverStateMachine.STATE_STARTING
+                && state != ReceiverStateMachine.STATE_STOPPING;
+    }
+
+    /**
+     * Return the receiver state, as cached by the service. Requests
+     * change it right away, before they have been executed.
+     *
+     * @return ReceiverStateMachine.STATE_* constant
+     */
+    public int getReceiverState() {
+        return mStates.getState();
     }
 
     /**
@@ -637,6 +2249,200 @@ public class FmRadioService extends Service
         return mFmBand.getChannelOffset();
     }
 
+    /**
+     * Get number of notification updates posted to the notification manager
+     *
+     * @return posted count
+     */
+    public int getNotificationsPosted() {
+        return mNotificationUpdater.getPostedCount();
+    }
+
+    /**
+     * Get number of notification updates that were dropped because
+     * nothing changed or a newer update replaced them
+     *
+     * @return suppressed count
+     */
+    public int getNotificationsSuppressed() {
+        return mNotificationUpdater.getSuppressedCount();
+    }
+
+    /**
+     * Get frequency formatter for the active band
+     *
+     * @return formatter, or null if the radio was never started
+     */
+    public FrequencyFormatter getFrequencyFormatter() {
+        return mFrequencyFormatter;
+    }
+
+    /**
+     * Enable or disable fast seek. With fast seek, seeks tune directly
+     * to the next station found by earlier scans or seeks or in the RDS
+     * cache, and only fall back to a receiver seek if there is none in
+     * that direction.
+     *
+     * @param enabled whether fast seek is used
+     */
+    public void setFastSeekEnabled(boolean enabled) {
+        mFastSeekEnabled = enabled;
+    }
+
+    public boolean isFastSeekEnabled() {
+        return mFastSeekEnabled;
+    }
+
+    /**
+     * Get latency statistics of seeks to known stations, from execution
+     * of the request until the receiver is tuned
+     *
+     * @return statistics, updated live
+     */
+    public LatencyStats getFastSeekStats() {
+        return mFastSeekStats;
+    }
+
+    /**
+     * Get latency statistics of receiver seeks, from execution of the
+     * request until the receiver reports the result
+     *
+     * @return statistics, updated live
+     */
+    public LatencyStats getHardwareSeekStats() {
+        return mHardwareSeekStats;
+    }
+
+    /**
+     * Enable or disable AF following. When enabled, the service switches
+     * to the strongest alternative frequency of the current program when
+     * reception stays below the af_threshold signal strength.
+     *
+     * @param enabled whether AF following is used
+     */
+    public void setAfFollowingEnabled(boolean enabled) {
+        mAfEnabled = enabled;
+        mMonitorHandler.post(new Runnable() {
+            public void run() {
+                updateMonitoring();
+            }
+        });
+    }
+
+    public boolean isAfFollowingEnabled() {
+        return mAfEnabled;
+    }
+
+    /**
+     * Get statistics of the time taken to retune for AF switches that
+     * improved reception
+     *
+     * @return statistics, updated live
+     */
+    public LatencyStats getAfSwitchStats() {
+        return mAfSwitchStats;
+    }
+
+    /**
+     * Get durations of receiver starts, from powering up the receiver
+     * until audio plays
+     *
+     * @return statistics, updated live
+     */
+    public LatencyStats getStartStats() {
+        return mStartStats;
+    }
+
+    /**
+     * Get durations from the app launch until audio plays
+     *
+     * @return statistics, updated live
+     */
+    public LatencyStats getLaunchStats() {
+        return mLaunchStats;
+    }
+
+    /**
+     * Get durations of audio output switches on a running receiver
+     *
+     * @return statistics, updated live
+     */
+    public LatencyStats getOutputSwitchStats() {
+        return mOutputSwitchStats;
+    }
+
+    /**
+     * Get durations of band switches on a running receiver that didn't
+     * need a restart
+     *
+     * @return statistics, updated live
+     */
+    public LatencyStats getBandSwitchStats() {
+        return mBandSwitchStats;
+    }
+
+    /**
+     * Start recording signal strength samples. The strength of the current
+     * frequency is sampled once a second while the receiver is started,
+     * and seek results are recorded as well. Sampling stops when all
+     * callers have called stopSignalSampling().
+     */
+    public synchronized void startSignalSampling() {
+        if (mSamplingClients++ == 0) {
+            mMonitorHandler.post(new Runnable() {
+                public void run() {
+                    updateMonitoring();
+                }
+            });
+        }
+    }
+
+    /**
+     * Stop recording signal strength samples
+     */
+    public synchronized void stopSignalSampling() {
+        if (mSamplingClients == 0)
+            return;
+        if (--mSamplingClients == 0) {
+            mMonitorHandler.post(new Runnable() {
+                public void run() {
+                    updateMonitoring();
+                }
+            });
+        }
+    }
+
+    /**
+     * Get signal strength statistics of recent samples
+     *
+     * @param window window length in ms, ending now
+     * @param frequency only use samples of this frequency, or
+     *        SignalSampler.ANY_FREQUENCY
+     * @param out receives min, average and max strength
+     * @return number of samples in the window
+     */
+    public int getSignalStats(long window, int frequency, SignalSampler.Stats out) {
+        return mSignalSampler.getStats(SystemClock.elapsedRealtime() - window, frequency, out);
+    }
+
+    /**
+     * Get last known program type of a station in the active band. Safe
+     * to call for every list row: it doesn't take the RDS state lock and
+     * doesn't count as use of RDS cache entries.
+     *
+     * @param frequency frequency in KHz
+     * @return PTY, or 0 if unknown
+     */
+    public int getCachedPty(int frequency) {
+        BandPlan band = mFmBand;
+        if (band == null)
+            return 0;
+        int pty = mPtyIndex.getPty(frequency);
+        if (pty < 0)
+            pty = mRdsCache.getPty(band.getBand(), frequency);
+        return Math.max(pty, 0);
+    }
+
     /**
      * Get current audio output device
      *
@@ -22,7 +22,7 @@ import android.content.Context;
 import android.widget.Toast;
 
 public class FmUtils {
-    public static final int CHANNEL_OFFSET_50KHZ = 50;
+    public static final int CHANNEL_OFFSET_50KHZ = FrequencyFormatter.CHANNEL_OFFSET_50KHZ;
 
     /**
      * Format frequency in KHz to humanly readable format
@@ -32,13 +32,7 @@ public class FmUtils {
      * @return formatted string
      */
     public static String formatFrequency (int offset, int frequency) {
-        String a = Double.toString((double) frequency / 1000);
-        if (offset == CHANNEL_OFFSET_50KHZ) {
-            a = String.format(a, "%.2f");
-        } else {
-            a = String.format(a, "%.1f");
-        }
-        return a;
+        return FrequencyFormatter.format(offset, frequency);
     }
 
     /**
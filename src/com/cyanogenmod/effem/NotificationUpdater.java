@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Posts the ongoing playback notification, but only when its content
+ * changed and not more often than a minimum interval
+ *
+ * Every notify() is a binder transaction into system_server. Updates
+ * with unchanged title and text are dropped, and bursts (seeking,
+ * step-repeat, scans) are coalesced so that only the latest content is
+ * posted once the interval has passed.
+ */
+class NotificationUpdater {
+    // minimum time between two posts
+    private static final long MIN_INTERVAL = 500;
+    // minimum time between two posts while throttled
+    private static final long THROTTLED_INTERVAL = 2000;
+
+    private final Handler mHandler;
+    private final NotificationManager mNotificationManager;
+    private final Notification.Builder mBuilder;
+    private final int mId;
+
+    private Notification mNotification;
+    private String mPostedTitle;
+    private String mPostedText;
+    private String mTitle;
+    private String mText;
+    private boolean mPending;
+    private boolean mScheduled;
+    private boolean mThrottled;
+    private long mLastPost;
+
+    // statistics
+    private int mPostedCount;
+    private int mUnchangedCount;
+    private int mCoalescedCount;
+
+    private final Runnable mPostAction = new Runnable() {
+        public void run() {
+            synchronized (NotificationUpdater.this) {
+                mScheduled = false;
+                if (mPending)
+                    postOrSchedule();
+            }
+        }
+    };
+
+    /**
+     * @param handler handler for delayed posts
+     * @param notificationManager notification manager
+     * @param builder prepared builder, only title and text are changed
+     * @param id notification id
+     */
+    public NotificationUpdater(Handler handler, NotificationManager notificationManager,
+            Notification.Builder builder, int id) {
+        mHandler = handler;
+        mNotificationManager = notificationManager;
+        mBuilder = builder;
+        mId = id;
+    }
+
+    /**
+     * Request notification content
+     *
+     * @param title content title
+     * @param text content text
+     */
+    public synchronized void update(String title, String text) {
+        mTitle = title;
+        mText = text;
+
+        if (equals(title, mPostedTitle) && equals(text, mPostedText)) {
+            // a pending update would be reverted anyway
+            if (mPending) {
+                mPending = false;
+                mCoalescedCount++;
+            }
+            mUnchangedCount++;
+            return;
+        }
+
+        if (mPending)
+            mCoalescedCount++;
+        mPending = true;
+        postOrSchedule();
+    }
+
+    /**
+     * Use a longer minimum interval, e.g. during scans
+     *
+     * @param throttled throttle state
+     */
+    public synchronized void setThrottled(boolean throttled) {
+        mThrottled = throttled;
+        if (!throttled && mPending)
+            postOrSchedule();
+    }
+
+    /**
+     * Post pending content immediately
+     *
+     * @return the current notification, or null if nothing was posted yet
+     */
+    public synchronized Notification flush() {
+        if (mPending)
+            post();
+        return mNotification;
+    }
+
+    /**
+     * Forget posted content, e.g. after the notification was removed,
+     * so that the next update is posted again
+     */
+    public synchronized void reset() {
+        mHandler.removeCallbacks(mPostAction);
+        mScheduled = false;
+        mPending = false;
+        mPostedTitle = null;
+        mPostedText = null;
+    }
+
+    public synchronized int getPostedCount() {
+        return mPostedCount;
+    }
+
+    /**
+     * Number of updates that were not posted, either because nothing
+     * changed or because a newer update replaced them
+     */
+    public synchronized int getSuppressedCount() {
+        return mUnchangedCount + mCoalescedCount;
+    }
+
+    private void postOrSchedule() {
+        long interval = mThrottled ? THROTTLED_INTERVAL : MIN_INTERVAL;
+        long next = mLastPost + interval;
+        if (SystemClock.uptimeMillis() >= next) {
+            post();
+        } else if (!mScheduled) {
+            mScheduled = true;
+            mHandler.postAtTime(mPostAction, next);
+        }
+    }
+
+    private void post() {
+        mBuilder.setContentTitle(mTitle).setContentText(mText);
+        mNotification = mBuilder.getNotification();
+        mNotificationManager.notify(mId, mNotification);
+
+        mPostedTitle = mTitle;
+        mPostedText = mText;
+        mPending = false;
+        mLastPost = SystemClock.uptimeMillis();
+        mPostedCount++;
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -29,14 +29,20 @@ import android.widget.ImageButton;
 /**
  * ImageButton with support for repeated longclicks
  *
+ * Optionally, repeats get faster the longer the button is held, and a
+ * listener is told when the button is released after repeating.
+ *
  * @author Grigori Goronzy
  */
 public class RepeatImageButton extends ImageButton {
     private OnLongClickListener repeatClickListener;
     private OnClickListener clickListener;
+    private OnRepeatEndListener repeatEndListener;
 
     private int delay = 700;
     private int interval = 400;
+    private int minInterval = 0;
+    private int currentInterval;
     private boolean enabled = true;
 
     private boolean longClickFired;
@@ -48,13 +54,30 @@ public class RepeatImageButton extends ImageButton {
             if (repeatClickListener != null) {
                 boolean res = repeatClickListener
                     .onLongClick(RepeatImageButton.this);
-                if (res == true)
-                    mHandler.postDelayed(this, interval);
+                if (res == true) {
+                    // speed up until the minimum interval is reached
+                    if (minInterval > 0)
+                        currentInterval = Math.max(minInterval, currentInterval * 3 / 4);
+                    mHandler.postDelayed(this, currentInterval);
+                }
                 longClickFired = true;
             }
         }
     };
 
+    /**
+     * Interface definition for a callback to be invoked when the button
+     * is released after repeated long clicks
+     */
+    public interface OnRepeatEndListener {
+        /**
+         * Called when repeating has ended
+         *
+         * @param v the button
+         */
+        public void onRepeatEnd(View v);
+    }
+
     public RepeatImageButton(Context ctx, AttributeSet attrs) {
         super(ctx, attrs);
     }
@@ -66,6 +89,7 @@ public class RepeatImageButton extends ImageButton {
                 if (mHandler != null)
                     return true;
                 longClickFired = false;
+                currentInterval = interval;
                 if (enabled) {
                     mHandler = new Handler();
                     mHandler.postDelayed(repeatAction, delay);
@@ -81,6 +105,8 @@ public class RepeatImageButton extends ImageButton {
                 setPressed(false);
                 if (!longClickFired && clickListener != null) {
                     clickListener.onClick(RepeatImageButton.this);
+                } else if (longClickFired && repeatEndListener != null) {
+                    repeatEndListener.onRepeatEnd(RepeatImageButton.this);
                 }
                 break;
         }
@@ -103,6 +129,10 @@ public class RepeatImageButton extends ImageButton {
         clickListener = listener;
     }
 
+    public void setOnRepeatEndListener(OnRepeatEndListener listener) {
+        repeatEndListener = listener;
+    }
+
     /**
      * Set click repeat interval
      *
@@ -113,4 +143,14 @@ public class RepeatImageButton extends ImageButton {
         delay = d;
         interval = i;
     }
+
+    /**
+     * Shorten the repeat interval with every repeat, down to a minimum
+     *
+     * @param min minimum repeat interval in milliseconds, 0 disables
+     *            acceleration (default)
+     */
+    public void setRepeatAcceleration(int min) {
+        minInterval = min;
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Bar graph of the signal strength of every channel of a band, with a
+ * marker at the current frequency. Tapping a channel selects it.
+ */
+public class SpectrumView extends View {
+    private final Spectrum mSpectrum = new Spectrum();
+    private int mFrequency;
+    private OnChannelSelectedListener mListener;
+
+    private final Paint mBarPaint = new Paint();
+    private final Paint mUnmeasuredPaint = new Paint();
+    private final Paint mMarkerPaint = new Paint();
+
+    /**
+     * Interface definition for a callback to be invoked when a channel is
+     * tapped
+     */
+    public interface OnChannelSelectedListener {
+        /**
+         * @param frequency frequency of the channel in KHz
+         */
+        public void onChannelSelected(int frequency);
+    }
+
+    public SpectrumView(Context context) {
+        super(context);
+        init();
+    }
+
+    public SpectrumView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    private void init() {
+        mBarPaint.setColor(Color.LTGRAY);
+        mUnmeasuredPaint.setColor(Color.DKGRAY);
+        mMarkerPaint.setColor(Color.WHITE);
+        mMarkerPaint.setStrokeWidth(2);
+    }
+
+    public void setOnChannelSelectedListener(OnChannelSelectedListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Show a spectrum
+     *
+     * @param spectrum spectrum, copied
+     */
+    public void setSpectrum(Spectrum spectrum) {
+        mSpectrum.set(spectrum);
+        invalidate();
+    }
+
+    /**
+     * Set frequency of the marker
+     *
+     * @param frequency frequency in KHz
+     */
+    public void setFrequency(int frequency) {
+        if (frequency == mFrequency)
+            return;
+        mFrequency = frequency;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        int channels = mSpectrum.getChannelCount();
+        if (channels == 0)
+            return;
+
+        float width = getWidth();
+        float height = getHeight();
+        float barWidth = width / channels;
+        int max = Math.max(mSpectrum.getMaxStrength(), 1);
+
+        for (int i = 0; i < channels; i++) {
+            int strength = mSpectrum.getStrength(i);
+            float left = i * barWidth;
+            if (strength == Spectrum.UNMEASURED) {
+                // a stub at the baseline, so that progress is visible
+                canvas.drawRect(left, height - 1, left + barWidth, height, mUnmeasuredPaint);
+                continue;
+            }
+            float top = height - height * strength / max;
+            canvas.drawRect(left, top, left + barWidth, height, mBarPaint);
+        }
+
+        int channel = mSpectrum.getBandPlan().getChannel(mFrequency);
+        if (channel >= 0) {
+            float x = (channel + 0.5f) * barWidth;
+            canvas.drawLine(x, 0, x, height, mMarkerPaint);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        int channels = mSpectrum.getChannelCount();
+        if (channels == 0 || getWidth() == 0)
+            return false;
+
+        if (event.getActionMasked() == MotionEvent.ACTION_UP && mListener != null) {
+            int channel = (int) (event.getX() * channels / getWidth());
+            channel = Math.max(0, Math.min(channel, channels - 1));
+            mListener.onChannelSelected(mSpectrum.getFrequency(channel));
+        }
+        return true;
+    }
+}
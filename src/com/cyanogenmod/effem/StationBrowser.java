@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import android.app.Dialog;
+import android.content.Context;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.EditText;
+import android.widget.ListView;
+
+/**
+ * Dialog listing favorite stations, with a filter on name and program
+ * type. Rows are recycled, so the list scales to any number of favorites.
+ */
+class StationBrowser {
+    /**
+     * Receives the station picked by the user
+     */
+    public interface OnStationSelectedListener {
+        public void onStationSelected(MenuTuple station);
+    }
+
+    private final Dialog mDialog;
+    private final EditText mFilter;
+    private final FavoritesAdapter mAdapter;
+
+    /**
+     * @param context context for the dialog
+     * @param adapter favorites to list, filtered by the browser
+     * @param listener receives the selected station
+     */
+    public StationBrowser(Context context, FavoritesAdapter adapter,
+            final OnStationSelectedListener listener) {
+        mAdapter = adapter;
+        mDialog = new Dialog(context);
+        mDialog.setTitle(R.string.station_select);
+        mDialog.setContentView(R.layout.station_browser);
+
+        ListView list = (ListView) mDialog.findViewById(R.id.StationList);
+        list.setAdapter(adapter);
+        list.setEmptyView(mDialog.findViewById(R.id.StationListEmpty));
+        list.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                MenuTuple station = mAdapter.getItem(position);
+                mDialog.dismiss();
+                listener.onStationSelected(station);
+            }
+        });
+
+        mFilter = (EditText) mDialog.findViewById(R.id.StationFilter);
+        mFilter.addTextChangedListener(new TextWatcher() {
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                mAdapter.setFilter(s);
+            }
+
+            public void afterTextChanged(Editable s) {
+            }
+        });
+    }
+
+    /**
+     * Show the browser, keeping the filter from the last time
+     */
+    public void show() {
+        mDialog.show();
+    }
+
+    public void dismiss() {
+        mDialog.dismiss();
+    }
+}
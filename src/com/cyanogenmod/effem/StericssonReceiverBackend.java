@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2026 The CyanogenMod Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cyanogenmod.effem;
+
+import android.os.Bundle;
+import com.stericsson.hardware.fm.FmBand;
+import com.stericsson.hardware.fm.FmReceiver;
+import java.io.IOException;
+
+/**
+ * Receiver backend for the ST-Ericsson FM radio framework
+ */
+public class StericssonReceiverBackend implements FmReceiverBackend {
+    private final FmReceiver mFmReceiver;
+    private volatile Listener mListener;
+
+    private final FmReceiver.OnScanListener mScanListener =
+            new FmReceiver.OnScanListener() {
+        public void onFullScan(int[] frequency, int[] signalStrength, boolean aborted) {
+            Listener l = mListener;
+            if (l != null)
+                l.onFullScan(frequency, signalStrength, aborted);
+        }
+
+        public void onScan(int tunedFrequency, int signalStrength,
+                int scanDirection, boolean aborted) {
+            Listener l = mListener;
+            if (l != null) {
+                l.onScan(tunedFrequency, signalStrength,
+                        scanDirection == FmReceiver.SCAN_UP ? SCAN_UP : SCAN_DOWN,
+                        aborted);
+            }
+        }
+    };
+
+    private final FmReceiver.OnRDSDataFoundListener mRdsDataFoundListener =
+            new FmReceiver.OnRDSDataFoundListener() {
+        public void onRDSDataFound(Bundle rdsData, int frequency) {
+            Listener l = mListener;
+            if (l != null)
+                l.onRdsDataFound(convertRdsData(rdsData), frequency);
+        }
+    };
+
+    private final FmReceiver.OnStartedListener mStartedListener =
+            new FmReceiver.OnStartedListener() {
+        public void onStarted() {
+            Listener l = mListener;
+            if (l != null)
+                l.onStarted();
+        }
+    };
+
+    public StericssonReceiverBackend(FmReceiver receiver) {
+        mFmReceiver = receiver;
+    }
+
+    /**
+     * Convert RDS bundle as delivered by the framework
+     *
+     * @param bundle RDS data bundle
+     * @return converted data
+     */
+    private static RdsData convertRdsData(Bundle bundle) {
+        RdsData data = new RdsData();
+        if (bundle.containsKey("PSN")) {
+            data.psn = bundle.getString("PSN");
+            data.fields |= RdsData.FIELD_PSN;
+        }
+        if (bundle.containsKey("RT")) {
+            data.rt = bundle.getString("RT");
+            data.fields |= RdsData.FIELD_RT;
+        }
+        if (bundle.containsKey("PTY")) {
+            data.pty = bundle.getShort("PTY");
+            data.fields |= RdsData.FIELD_PTY;
+        }
+        if (bundle.containsKey("PI")) {
+            data.pi = bundle.getShort("PI") & 0xffff;
+            data.fields |= RdsData.FIELD_PI;
+        }
+        if (bundle.containsKey("AF")) {
+            data.af = bundle.getIntArray("AF");
+            if (data.af != null)
+                data.fields |= RdsData.FIELD_AF;
+        }
+        return data;
+    }
+
+    public BandPlan getBandPlan(int band) {
+        FmBand fmBand = new FmBand(band);
+        return new BandPlan(band, fmBand.getMinFrequency(), fmBand.getMaxFrequency(),
+                fmBand.getDefaultFrequency(), fmBand.getChannelOffset());
+    }
+
+    public void start(BandPlan band) throws IOException {
+        mFmReceiver.start(new FmBand(band.getBand()));
+    }
+
+    public boolean setBand(BandPlan band) throws IOException {
+        // the band is fixed when the receiver is started
+        return false;
+    }
+
+    public void reset() throws IOException {
+        mFmReceiver.reset();
+    }
+
+    public void pause() throws IOException {
+        mFmReceiver.pause();
+    }
+
+    public void resume() throws IOException {
+        mFmReceiver.resume();
+    }
+
+    public int getState() {
+        return mFmReceiver.getState();
+    }
+
+    public int getFrequency() throws IOException {
+        return mFmReceiver.getFrequency();
+    }
+
+    public void setFrequency(int frequency) throws IOException {
+        mFmReceiver.setFrequency(frequency);
+    }
+
+    public void scanUp() {
+        mFmReceiver.scanUp();
+    }
+
+    public void scanDown() {
+        mFmReceiver.scanDown();
+    }
+
+    public void startFullScan() {
+        mFmReceiver.startFullScan();
+    }
+
+    public void stopScan() {
+        mFmReceiver.stopScan();
+    }
+
+    public int getSignalStrength() throws IOException {
+        return mFmReceiver.getSignalStrength();
+    }
+
+    public void setListener(Listener listener) {
+        if (listener != null && mListener == null) {
+            mFmReceiver.addOnScanListener(mScanListener);
+            mFmReceiver.addOnStartedListener(mStartedListener);
+            mFmReceiver.addOnRDSDataFoundListener(mRdsDataFoundListener);
+        } else if (listener == null && mListener != null) {
+            mFmReceiver.removeOnScanListener(mScanListener);
+            mFmReceiver.removeOnStartedListener(mStartedListener);
+            mFmReceiver.removeOnRDSDataFoundListener(mRdsDataFoundListener);
+        }
+        mListener = listener;
+    }
+}